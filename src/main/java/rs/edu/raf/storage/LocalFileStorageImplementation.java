@@ -2,21 +2,66 @@ package rs.edu.raf.storage;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import rs.edu.raf.storage.comparator.FileModifiedDateComparator;
-import rs.edu.raf.storage.comparator.FileNameComparator;
+import rs.edu.raf.storage.accounting.DirectoryUsage;
+import rs.edu.raf.storage.admission.Admission;
+import rs.edu.raf.storage.admission.AdmissionRequest;
+import rs.edu.raf.storage.batch.BatchPlan;
+import rs.edu.raf.storage.batch.BatchStep;
+import rs.edu.raf.storage.batch.BatchUndoLog;
+import rs.edu.raf.storage.batch.StorageBatch;
+import rs.edu.raf.storage.concurrency.SharedPool;
+import rs.edu.raf.storage.concurrency.StripedPathLock;
+import rs.edu.raf.storage.comparator.FileEntryModifiedDateComparator;
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.deletion.DeleteResult;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+import rs.edu.raf.storage.deletion.TreeDeleter;
+import rs.edu.raf.storage.comparator.FileEntryNameComparator;
 import rs.edu.raf.storage.enums.Operations;
 import rs.edu.raf.storage.enums.Privileges;
 import rs.edu.raf.storage.exceptions.*;
+import rs.edu.raf.storage.index.DirectoryIndex;
+import rs.edu.raf.storage.index.ExtensionIndex;
+import rs.edu.raf.storage.index.ExtensionStats;
+import rs.edu.raf.storage.index.IndexedFile;
+import rs.edu.raf.storage.index.NameIndex;
+import rs.edu.raf.storage.listing.DirectoryTreeIterator;
+import rs.edu.raf.storage.listing.FileEntry;
+import rs.edu.raf.storage.listing.ListingPage;
+import rs.edu.raf.storage.listing.ParallelDirectoryWalker;
+import rs.edu.raf.storage.listing.TopKCollector;
+import rs.edu.raf.storage.persistence.JournalRecord;
+import rs.edu.raf.storage.persistence.OperationJournal;
+import rs.edu.raf.storage.query.StorageQuery;
+import rs.edu.raf.storage.security.FolderPrivilegeResolver;
+import rs.edu.raf.storage.session.StorageSession;
 import rs.edu.raf.storage.storage_management.FileStorage;
 import rs.edu.raf.storage.storage_management.StorageManager;
+import rs.edu.raf.storage.transfer.FileIngester;
+import rs.edu.raf.storage.transfer.IngestMode;
+import rs.edu.raf.storage.transfer.ParallelFileCopier;
+import rs.edu.raf.storage.transfer.PutResult;
+import rs.edu.raf.storage.transfer.StreamIngester;
 import rs.edu.raf.storage.user_management.User;
 
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class LocalFileStorageImplementation implements FileStorage {
 
@@ -24,8 +69,45 @@ public class LocalFileStorageImplementation implements FileStorage {
         StorageManager.registerStorage(new LocalFileStorageImplementation());
     }
 
-    private final List<StorageModel> storageModelList = new ArrayList<>();
-    private StorageModel currentStorage;
+    private final List<StorageModel> storageModelList = new CopyOnWriteArrayList<>();
+    private volatile StorageModel currentStorage;
+    private boolean directoryIndexEnabled = false;
+    private boolean nameIndexEnabled = false;
+    private boolean extensionIndexEnabled = false;
+    // Implementacija koja je otvorila skladiste (za sesije) - samo ona drzi pool-ove niti, pa ih sve sesije dele
+    private final LocalFileStorageImplementation owner;
+    private final SharedPool<ParallelDirectoryWalker> directoryWalkers = new SharedPool<>(ParallelDirectoryWalker::shutdown);
+    private final SharedPool<ParallelFileCopier> putCopiers = new SharedPool<>(ParallelFileCopier::shutdown);
+    private final SharedPool<TreeDeleter> treeDeleters = new SharedPool<>(TreeDeleter::shutdown);
+    private boolean fastDeleteEnabled = false;
+    private long trashReclaimRate = 0;
+    private IngestMode ingestMode = IngestMode.COPY;
+    private boolean deduplicationEnabled = false;
+    private long writeBehindDelayMillis = 0;
+    private boolean journalEnabled = false;
+    private boolean usageAccountingEnabled = false;
+    private long usageReconcileIntervalSeconds = 0;
+
+    public LocalFileStorageImplementation() {
+        this.owner = this;
+    }
+
+    // Pogled na vec otvoreno skladiste za sesiju: deli model skladista i pool-ove niti sa implementacijom koja ga je otvorila
+    private LocalFileStorageImplementation(LocalFileStorageImplementation owner, StorageModel storageModel) {
+        this.owner = owner.owner;
+        this.currentStorage = storageModel;
+        this.directoryIndexEnabled = owner.directoryIndexEnabled;
+        this.nameIndexEnabled = owner.nameIndexEnabled;
+        this.extensionIndexEnabled = owner.extensionIndexEnabled;
+        this.fastDeleteEnabled = owner.fastDeleteEnabled;
+        this.trashReclaimRate = owner.trashReclaimRate;
+        this.ingestMode = owner.ingestMode;
+        this.deduplicationEnabled = owner.deduplicationEnabled;
+        this.writeBehindDelayMillis = owner.writeBehindDelayMillis;
+        this.journalEnabled = owner.journalEnabled;
+        this.usageAccountingEnabled = owner.usageAccountingEnabled;
+        this.usageReconcileIntervalSeconds = owner.usageReconcileIntervalSeconds;
+    }
 
     @Override
     public void createFolder(String path, String ...folderNames) throws InsufficientPrivilegesException, FileNotFoundException {
@@ -33,10 +115,8 @@ public class LocalFileStorageImplementation implements FileStorage {
         String fullPath = currentStorage.getRootDirectory() + "/" + path;
 
         // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(fullPath)) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(fullPath).contains(Privileges.CREATE))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-        }
+        if (!hasFolderPrivilege(fullPath, Privileges.CREATE))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
 
         // Provera da li je trenutni korisnik null
         if(currentStorage.getCurrentUser() == null)
@@ -48,7 +128,7 @@ public class LocalFileStorageImplementation implements FileStorage {
         }
 
         // Provera da li postoje prosledjeni path
-        if (!new File(currentStorage.getRootDirectory() + "/" + path).exists()) {
+        if (!new File(currentStorage.getRootDirectory() + "/" + path).exists() || currentStorage.isInternalPath(fullPath)) {
             throw new FileNotFoundException();
         }
 
@@ -65,12 +145,20 @@ public class LocalFileStorageImplementation implements FileStorage {
 
                 for (int i = firstNum; i <= secondNum; i++) {
                     File folder = new File(currentStorage.getRootDirectory() + "/" + path + "/" + folderNameBase + i);
-                    folder.mkdir();
+                    checkNotInternal(folder.getPath());
+                    if (folder.mkdir())
+                        countEntryAdded(folder.getPath());
+                    refreshIndex(folder.getPath());
+                    accountDirectoryAdded(folder.getPath());
                 }
             } else {
                 fullPath = currentStorage.getRootDirectory() + "/" + path + "/" + folderName;
+                checkNotInternal(fullPath);
                 File newFolder = new File(fullPath);
-                newFolder.mkdir();
+                if (newFolder.mkdir())
+                    countEntryAdded(fullPath);
+                refreshIndex(fullPath);
+                accountDirectoryAdded(fullPath);
             }
         }
     }
@@ -79,54 +167,29 @@ public class LocalFileStorageImplementation implements FileStorage {
     public void createFile(String path, String ...filenames) throws InvalidExtensionException, InsufficientPrivilegesException, FileLimitExceededException, FileNotFoundException {
 
         String fullPath = currentStorage.getRootDirectory() + "/" + path;
-        File destinationFolder = new File(fullPath);
-
-        // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(fullPath)) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(fullPath).contains(Privileges.CREATE))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-        }
-
-        // Provera da li je trenutni korisnik null
-        if(currentStorage.getCurrentUser() == null)
-            throw new CurrentUserIsNullException();
-
-        System.out.println("Trenutni user " + currentStorage.getCurrentUser());
-        System.out.println("Privilegije " + currentStorage.getCurrentUser().getPrivileges());
-        // Provera privilegija:
-        if(!currentStorage.getCurrentUser().getPrivileges().contains(Privileges.CREATE)){
-            throw new InsufficientPrivilegesException();
-        }
-
-        // Provera li postoji putanja na koju smestamo fajl
-        if(!new File(fullPath).exists())
-            throw new FileNotFoundException();
-
-        // Provera da li cemo prekoraciti broj fajlova u nekom folderu:
-        // Prvo proverava da li u HashMap-u postoji folder u kojem se kreira novi fajl
-        // Ako postoji, proverava da li (trenutni broj fajlova u tom folderu + 1) prekoracuje maksimalan definisani iz HashMap-a
-        if(currentStorage.getMaxNumberOfFilesInDirectory().containsKey(fullPath)){
-            int numberOfFiles = destinationFolder.listFiles().length;
-            if(numberOfFiles + filenames.length > currentStorage.getMaxNumberOfFilesInDirectory().get(fullPath))
-                throw new FileLimitExceededException();
-        }
-        for(String filename: filenames) {
-
-            // Provera da li prosledjeni fajl ima ekstenziju koja nije dozvoljena:
-            if (checkExtensions(filename)) {
-                throw new InvalidExtensionException();
-            }
 
-
-            // Kreiranje fajla u datom pathu
-            // Metoda Files.createDirectories() kreira sve potrebne nadfoldere ako ne postoje
-            // Npr. ako je prosledjeno /folder/folder1/folder2, napravice sva tri foldera ako ne postoje, a onda ce smestiti fajl u folder2
-            try {
-                Files.createDirectories(Paths.get(fullPath));
-                File newFile = new File(currentStorage.getRootDirectory() + "/" + path + "/" + filename);
-                newFile.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
+        // Provera privilegija, postojanja foldera, broja fajlova u folderu i ekstenzija - odjednom za sve fajlove
+        AdmissionRequest request = new AdmissionRequest(fullPath, Privileges.CREATE);
+        for(String filename: filenames)
+            request.addFile(filename, 0);
+        try (Admission admission = currentStorage.getAdmissionPolicy().admit(request, currentStorage)) {
+            for(String filename: filenames) {
+
+                // Kreiranje fajla u datom pathu
+                // Metoda Files.createDirectories() kreira sve potrebne nadfoldere ako ne postoje
+                // Npr. ako je prosledjeno /folder/folder1/folder2, napravice sva tri foldera ako ne postoje, a onda ce smestiti fajl u folder2
+                try {
+                    Files.createDirectories(Paths.get(fullPath));
+                    accountDirectoryAdded(fullPath);
+                    File newFile = new File(currentStorage.getRootDirectory() + "/" + path + "/" + filename);
+                    if (newFile.createNewFile()) {
+                        accountFileAdded(newFile.getPath(), 0);
+                        admission.entryAdded(newFile.getPath());
+                    }
+                    refreshIndex(newFile.getPath());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
     }
@@ -144,10 +207,8 @@ public class LocalFileStorageImplementation implements FileStorage {
         }
 
         // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(currentStorage.getRootDirectory())) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(currentStorage.getRootDirectory()).contains(Privileges.CREATE))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-        }
+        if (!hasFolderPrivilege(currentStorage.getRootDirectory(), Privileges.CREATE))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
 
         if (folderName.contains("{") && folderName.contains("}")) {
             String folderNameBase;
@@ -159,12 +220,19 @@ public class LocalFileStorageImplementation implements FileStorage {
 
             for (int i = firstNum; i <= secondNum; i++) {
                 File folder = new File(currentStorage.getRootDirectory() + "/" + folderNameBase + i);
-                folder.mkdir();
+                checkNotInternal(folder.getPath());
+                if (folder.mkdir())
+                    countEntryAdded(folder.getPath());
+                refreshIndex(folder.getPath());
+                accountDirectoryAdded(folder.getPath());
             }
         } else {
             String fullPath = currentStorage.getRootDirectory() + "/" + folderName;
             File newFolder = new File(fullPath);
-            newFolder.mkdir();
+            if (newFolder.mkdir())
+                countEntryAdded(fullPath);
+            refreshIndex(fullPath);
+            accountDirectoryAdded(fullPath);
         }
 
     }
@@ -174,43 +242,21 @@ public class LocalFileStorageImplementation implements FileStorage {
     public void createFile(String filename) throws InvalidExtensionException, InsufficientPrivilegesException, FileLimitExceededException {
 
         String fullPath = currentStorage.getRootDirectory() + "/" + filename;
-        File destinationFolder = currentStorage.getStorageFolder();
 
-        // Provera da li je trenutni korisnik null
-        if(currentStorage.getCurrentUser() == null)
-            throw new CurrentUserIsNullException();
-
-        // Provera privilegija:
-        if(!currentStorage.getCurrentUser().getPrivileges().contains(Privileges.CREATE)){
-            throw new InsufficientPrivilegesException();
-        }
-
-        // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(currentStorage.getRootDirectory())) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(currentStorage.getRootDirectory()).contains(Privileges.CREATE))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-        }
-
-        // Provera da li je dozvoljena ekstenzija fajla:
-        if(checkExtensions(filename)){
-            throw new InvalidExtensionException();
-        }
-
-        // Provera da li cemo prekoraciti broj fajlova u NEKOM FOLDERU:
-        // Prvo proverava da li u HashMap-u postoji folder u kojem se kreira novi fajl
-        // Ako postoji, proverava da li (trenutni broj fajlova u tom folderu + 1) prekoracuje maksimalan definisani iz HashMap-a
-        if(currentStorage.getMaxNumberOfFilesInDirectory().containsKey(currentStorage.getRootDirectory())){
-            int numberOfFiles = destinationFolder.listFiles().length;
-            if(numberOfFiles + 1 > currentStorage.getMaxNumberOfFilesInDirectory().get(currentStorage.getRootDirectory()))
-                throw new FileLimitExceededException();
-        }
+        // Provera privilegija, ekstenzije i broja fajlova u korenu skladista:
+        try (Admission admission = currentStorage.getAdmissionPolicy().admit(new AdmissionRequest(currentStorage.getRootDirectory(), Privileges.CREATE).addFile(filename, 0), currentStorage)) {
 
-        // Kreiranje fajla:
-        File newFile = new File(fullPath);
-        try {
-            newFile.createNewFile();
-        } catch (IOException e) {
-            e.printStackTrace();
+            // Kreiranje fajla:
+            File newFile = new File(fullPath);
+            try {
+                if (newFile.createNewFile()) {
+                    accountFileAdded(fullPath, 0);
+                    admission.entryAdded(fullPath);
+                }
+                refreshIndex(fullPath);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -226,33 +272,57 @@ public class LocalFileStorageImplementation implements FileStorage {
             throw new InsufficientPrivilegesException();
         }
 
+        // Zakljucavaju se folderi iz kojih se brise (lock-ovi su reentrant, pa ugnjezdeni poziv samo ponovo uzima isti stripe)
+        String[] parents = new String[paths.length];
+        for (int i = 0; i < paths.length; i++)
+            parents[i] = new File(currentStorage.getRootDirectory() + "/" + paths[i]).getParent();
+        try (StripedPathLock.Locked locked = currentStorage.getPathLocks().lock(parents)) {
+            deleteLocked(paths);
+        }
+    }
+
+    private void deleteLocked(String ...paths) {
         for(String path: paths) {
             String fullPath = currentStorage.getRootDirectory() + "/" + path;
             String pathWithoutFile = fullPath.substring(0, fullPath.lastIndexOf('/'));
             File file = new File(fullPath);
 
             // Provera privilegija na nivou foldera:
-            if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(pathWithoutFile)) {
-                if(!currentStorage.getCurrentUser().getFolderPrivileges().get(pathWithoutFile).contains(Privileges.DELETE))
-                    throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-            }
+            if (!hasFolderPrivilege(pathWithoutFile, Privileges.DELETE))
+                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
 
             // Provera da li postoji fajl na prosledjenoj putanji:
-            if (!file.exists()) {
+            if (!file.exists() || currentStorage.isInternalPath(fullPath)) {
                 throw new FileNotFoundException();
             }
 
-            if(file.isDirectory()){
-                for(File f : file.listFiles()){
-                    delete(f.getPath().replace("\\","/").replace(currentStorage.getRootDirectory(),""));
-                }
-                file.delete();
+            if (fastDeleteEnabled) {
+                moveToTrash(fullPath, file);
+            } else if(file.isDirectory()){
+                deleteTree(fullPath);
             } else {
-                boolean deleted = file.delete();
+                // Velicina se cita pre brisanja - posle brisanja length() vraca 0
+                long size = file.length();
+                long freedBytes = size;
+                boolean deleted;
+                if (currentStorage.getBlobStore() != null) {
+                    // Sa deduplikacijom se oslobadja samo sadrzaj koji vise nijedan fajl ne koristi
+                    try {
+                        freedBytes = currentStorage.getBlobStore().remove(file.toPath());
+                        deleted = true;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        deleted = false;
+                    }
+                } else {
+                    deleted = file.delete();
+                }
 
                 if (deleted) {
-                currentStorage.setCurrentStorageSize(currentStorage.getCurrentStorageSize() - file.length());
-                currentStorage.updateConfig();
+                currentStorage.changeStorageSize(-freedBytes);
+                refreshIndex(fullPath);
+                accountFileRemoved(fullPath, size);
+                countEntryRemoved(fullPath);
                 }
                 else
                     throw new FileDeleteFailedException();
@@ -282,74 +352,127 @@ public class LocalFileStorageImplementation implements FileStorage {
         }
 
         // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(currentStorage.getDownloadFolder())) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(currentStorage.getDownloadFolder()).contains(Privileges.DOWNLOAD))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-        }
+        if (!hasFolderPrivilege(currentStorage.getDownloadFolder(), Privileges.DOWNLOAD))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
 
+        // Premestanje u Download ostaje unutar skladista, pa se zauzece ne menja
         for(String path: paths) {
             move("Download", path);
-            currentStorage.setCurrentStorageSize(currentStorage.getCurrentStorageSize() + new File(path).length());
-            currentStorage.updateConfig();
         }
     }
 
-    @Override
-    public void move(String destination, String ...sources) throws InsufficientPrivilegesException, OperationFailedException, FileLimitExceededException, FileNotFoundException, StorageSizeExceededException, InvalidExtensionException{
+    // Citanje fajla bez premestanja u Download: kanal samo za citanje, sa proizvoljnim pozicioniranjem.
+    // Vise citalaca moze istovremeno citati isti fajl.
+    public SeekableByteChannel openRead(String path) throws FileNotFoundException, InsufficientPrivilegesException, OperationFailedException {
+        Path file = checkReadAccess(path);
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new OperationFailedException();
+        }
+    }
 
-        String fullPath = currentStorage.getRootDirectory() + "/" + destination;
-        File destinationFolder = new File(fullPath);
+    // Deo fajla mapiran u memoriju (samo za citanje) - citanje ide direktno iz page cache-a, bez kopiranja
+    public MappedByteBuffer map(String path, long position, long size) throws FileNotFoundException, InsufficientPrivilegesException, OperationFailedException {
+        Path file = checkReadAccess(path);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (position < 0 || size < 0 || position + size > channel.size())
+                throw new OperationFailedException();
+            // Mapiranje ostaje vazece i posle zatvaranja kanala
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new OperationFailedException();
+        }
+    }
+
+    // Provera DOWNLOAD privilegije (globalne i na nivou foldera u kom je fajl) i postojanja fajla
+    private Path checkReadAccess(String path) {
+
+        String fullPath = currentStorage.getRootDirectory() + "/" + path;
+        String pathWithoutFile = fullPath.substring(0, fullPath.lastIndexOf('/'));
 
         // Provera da li je trenutni korisnik null
         if(currentStorage.getCurrentUser() == null)
             throw new CurrentUserIsNullException();
 
         // Provera privilegija:
-        if(!getCurrentStorage().getCurrentUser().getPrivileges().contains(Privileges.CREATE)){
+        if(!currentStorage.getCurrentUser().getPrivileges().contains(Privileges.DOWNLOAD))
             throw new InsufficientPrivilegesException();
-        }
 
         // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(fullPath)) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(fullPath).contains(Privileges.CREATE))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-        }
+        if (!hasFolderPrivilege(pathWithoutFile, Privileges.DOWNLOAD))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
 
-        // Provera da li postoji destination:
-        if(!destinationFolder.exists())
+        // Provera da li postoji fajl na prosledjenoj putanji:
+        File file = new File(fullPath);
+        if (!file.isFile() || currentStorage.isInternalPath(fullPath))
             throw new FileNotFoundException();
 
-        // Provera prekoracenja broja fajlova u folderu:
-        if(currentStorage.getMaxNumberOfFilesInDirectory().containsKey(fullPath)){
-            int numberOfFiles = destinationFolder.listFiles().length;
-            if(numberOfFiles + sources.length > currentStorage.getMaxNumberOfFilesInDirectory().get(fullPath))
-                throw new FileLimitExceededException();
-        }
-
-        for(String source: sources) {
+        return file.toPath();
+    }
 
-            source = currentStorage.getRootDirectory() + "/" + source;
-            System.out.println(source);
-            File sourceFile = new File(source);
+    @Override
+    public void move(String destination, String ...sources) throws InsufficientPrivilegesException, OperationFailedException, FileLimitExceededException, FileNotFoundException, StorageSizeExceededException, InvalidExtensionException{
 
-            // Provera da li postoji fajl na prosledjenoj putanji:
-            if(!sourceFile.exists()) {
-                throw new FileNotFoundException();
-            }
+        String fullPath = currentStorage.getRootDirectory() + "/" + destination;
 
-            Path result = null;
+        // Provera privilegija, postojanja destinacije i broja fajlova u folderu.
+        // Premestanje je unutar skladista, pa se zauzece ne menja.
+        // Zakljucavaju se odredisni folder i folderi iz kojih se premesta
+        String[] lockedPaths = new String[sources.length + 1];
+        lockedPaths[0] = fullPath;
+        for (int i = 0; i < sources.length; i++)
+            lockedPaths[i + 1] = new File(currentStorage.getRootDirectory() + "/" + sources[i]).getParent();
+        Admission admission = currentStorage.getAdmissionPolicy().admit(new AdmissionRequest(fullPath, Privileges.CREATE).addEntries(sources.length), currentStorage);
+        try (admission; StripedPathLock.Locked locked = currentStorage.getPathLocks().lock(lockedPaths)) {
+
+            for(String source: sources) {
+
+                source = currentStorage.getRootDirectory() + "/" + source;
+                System.out.println(source);
+                File sourceFile = new File(source);
+
+                // Provera da li postoji fajl na prosledjenoj putanji:
+                if(!sourceFile.exists() || currentStorage.isInternalPath(source)) {
+                    throw new FileNotFoundException();
+                }
 
-            try {
-                String resultingPath = currentStorage.getRootDirectory() + "/" + destination + "/" + Paths.get(source).getFileName();
-                result = Files.move(Paths.get(source), Paths.get(resultingPath), StandardCopyOption.REPLACE_EXISTING);
-            } catch (NoSuchFileException e1) {
-                e1.printStackTrace();
-                return;
-            } catch (IOException e) {
-                e.printStackTrace();
+                Path result = null;
+                boolean directory = sourceFile.isDirectory();
+                long size = directory ? 0 : sourceFile.length();
+
+                try {
+                    String resultingPath = currentStorage.getRootDirectory() + "/" + destination + "/" + Paths.get(source).getFileName();
+                    File replaced = new File(resultingPath);
+                    boolean replacedExisting = replaced.exists();
+                    long replacedSize = replaced.isFile() ? replaced.length() : -1;
+                    result = Files.move(Paths.get(source), Paths.get(resultingPath), StandardCopyOption.REPLACE_EXISTING);
+                    countEntryRemoved(source);
+                    if (!replacedExisting)
+                        admission.entryAdded(resultingPath);
+                    refreshIndex(source);
+                    refreshIndex(resultingPath);
+                    blobMoved(source, resultingPath);
+                    if (directory) {
+                        accountDirectoryRemoved(source);
+                        accountDirectoryAdded(resultingPath);
+                    } else {
+                        if (replacedSize >= 0)
+                            accountFileRemoved(resultingPath, replacedSize);
+                        accountFileRemoved(source, size);
+                        accountFileAdded(resultingPath, size);
+                    }
+                } catch (NoSuchFileException e1) {
+                    e1.printStackTrace();
+                    return;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                if(result == null)
+                    throw new OperationFailedException();
             }
-            if(result == null)
-                throw new OperationFailedException();
         }
     }
 
@@ -357,286 +480,627 @@ public class LocalFileStorageImplementation implements FileStorage {
     public void put(String destination, String ...sources) throws FileAlreadyInStorageException, OperationFailedException, FileNotFoundException, InsufficientPrivilegesException, FileLimitExceededException, InvalidExtensionException, StorageSizeExceededException {
 
         String fullPath = currentStorage.getRootDirectory() + "/" + destination;
-        File destinationFolder = new File(fullPath);
-
-        // Provera da li je trenutni korisnik null
-        if(currentStorage.getCurrentUser() == null)
-            throw new CurrentUserIsNullException();
-
-        // Provera privilegija:
-        if(!getCurrentStorage().getCurrentUser().getPrivileges().contains(Privileges.CREATE)){
-            throw new InsufficientPrivilegesException();
-        }
-
-        // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(fullPath)) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(fullPath).contains(Privileges.CREATE))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
-        }
-
-        // Provera da li postoji destinacija
-        if(!destinationFolder.exists())
-            throw new FileNotFoundException();
 
+        // Velicina svakog source fajla se cita jednom, a sve provere se rade za celu grupu pre kopiranja
+        AdmissionRequest request = new AdmissionRequest(fullPath, Privileges.CREATE);
         for(String source: sources) {
-            // Provera prekoracenja broja fajlova u folderu:
-            if(currentStorage.getMaxNumberOfFilesInDirectory().containsKey(fullPath)){
-                int numberOfFiles = destinationFolder.listFiles().length;
-                System.out.println(numberOfFiles);
-                if(numberOfFiles + sources.length > currentStorage.getMaxNumberOfFilesInDirectory().get(fullPath))
-                    throw new FileLimitExceededException();
-
-            }
 
             // Provera da li postoji source fajl
             if(!new File(source).exists())
                 throw new FileNotFoundException();
 
-            Path sourcePath = Paths.get(source);
-
             //Provera da li se prosledjeni fajl koji stavljamo vec nalazi u skladistu - ako da, ispali exception FileAlreadyInStorageException
             if(source.contains(currentStorage.getRootDirectory())){
                 throw new FileAlreadyInStorageException();
             }
 
-            // Provera prekoracenja velicine skladista u bajtovima:
-            try {
-                long size = Files.size(sourcePath);
-                if (currentStorage.isStorageSizeLimitSet() && (currentStorage.getCurrentStorageSize() + size > currentStorage.getStorageSizeLimit())) {
-                    throw new StorageSizeExceededException();
+            request.addFile(source, new File(source).length());
+        }
+        Admission admission = currentStorage.getAdmissionPolicy().admit(request, currentStorage);
+        try (admission) {
+
+            for(String source: sources) {
+
+                Path sourcePath = Paths.get(source);
+                Path target = Paths.get(currentStorage.getRootDirectory() + "/" + destination + "/" + sourcePath.getFileName());
+                BlobStore blobStore = currentStorage.getBlobStore();
+                Path staged = null;
+                BlobStore.StagedBlob stagedBlob = null;
+                Path result = null;
+
+                try {
+                    // Sadrzaj se kopira u privremeni fajl van zakljucavanja; folder se zakljucava samo za zamenu fajla i azuriranje zauzeca
+                    long size;
+                    if (blobStore != null) {
+                        stagedBlob = blobStore.stage(sourcePath);
+                        size = stagedBlob.getSize();
+                    } else {
+                        staged = FileIngester.stage(sourcePath, currentStorage.getStagingDirectory(), ingestMode);
+                        size = Files.size(staged);
+                    }
+
+                    try (StripedPathLock.Locked locked = currentStorage.getPathLocks().lock(fullPath)) {
+                        // Ako se fajl prepisuje, od zauzeca se oduzima stari fajl
+                        boolean replacedExisting = Files.exists(target);
+                        long replacedSize = Files.isRegularFile(target) ? Files.size(target) : 0;
+                        long storedBytes;
+                        // Sa deduplikacijom se zauzece menja samo za sadrzaj koji skladiste jos nema
+                        if (stagedBlob != null) {
+                            storedBytes = blobStore.commit(stagedBlob, target);
+                            result = target;
+                        } else {
+                            result = FileIngester.commit(staged, target);
+                            storedBytes = size - replacedSize;
+                        }
+                        commitPut(admission, result, replacedExisting, size, replacedSize, storedBytes);
+                    }
+                } catch (IOException e1) {
+                    e1.printStackTrace();
+                } finally {
+                    // Ako su izvor i cilj vec isti fajl (hard link), preimenovanje ne radi nista i privremeni fajl ostaje
+                    deleteQuietly(staged);
+                    if (stagedBlob != null)
+                        deleteQuietly(stagedBlob.getTemp());
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
+
+                if(result == null)
+                    throw new OperationFailedException();
             }
+        }
+    }
+
+    // Put iz kanala (npr. mrezni izvor) bez privremenog fajla van skladista: sadrzaj se upisuje u privremeni fajl
+    // u folderu za pripremu upisa i na kraju atomski preimenuje. Upis se prekida cim bi se prekoracila velicina skladista.
+    public void put(String destination, String filename, ReadableByteChannel source) throws OperationFailedException, FileNotFoundException, InsufficientPrivilegesException, FileLimitExceededException, InvalidExtensionException, StorageSizeExceededException {
+
+        String fullPath = currentStorage.getRootDirectory() + "/" + destination;
 
-            // Provera da li je dozvoljena ekstenzija fajla:
-            if (checkExtensions(source)) {
-                throw new InvalidExtensionException();
+        // Ime i ekstenzija su poznati unapred, pa se proveravaju pre upisa; kvota se rezervise deo po deo tokom upisa
+        Admission admission = currentStorage.getAdmissionPolicy().admit(new AdmissionRequest(fullPath, Privileges.CREATE).addFile(filename, 0), currentStorage);
+
+        Path target = Paths.get(fullPath + "/" + filename);
+        BlobStore blobStore = currentStorage.getBlobStore();
+        Path temp = null;
+        BlobStore.StagedBlob stagedBlob = null;
+        try (admission) {
+            temp = StreamIngester.createTempFile(currentStorage.getStagingDirectory(), filename);
+            long size = StreamIngester.write(source, temp, admission::reserveBytes);
+            // Sa deduplikacijom se i hesiranje sadrzaja radi pre zakljucavanja
+            if (blobStore != null)
+                stagedBlob = blobStore.stage(temp);
+
+            // Folder se zakljucava samo za zamenu fajla i azuriranje zauzeca, ne za vreme upisa
+            try (StripedPathLock.Locked locked = currentStorage.getPathLocks().lock(fullPath)) {
+                boolean replacedExisting = Files.exists(target);
+                long replacedSize = Files.isRegularFile(target) ? Files.size(target) : 0;
+                long storedBytes;
+                if (stagedBlob != null) {
+                    storedBytes = blobStore.commit(stagedBlob, target);
+                    Files.delete(temp);
+                } else {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    storedBytes = size - replacedSize;
+                }
+                commitPut(admission, target, replacedExisting, size, replacedSize, storedBytes);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            deleteQuietly(temp);
+            if (stagedBlob != null)
+                deleteQuietly(stagedBlob.getTemp());
+            throw new OperationFailedException();
+        }
+    }
 
-            Path result = null;
+    public void put(String destination, String filename, InputStream source) throws OperationFailedException, FileNotFoundException, InsufficientPrivilegesException, FileLimitExceededException, InvalidExtensionException, StorageSizeExceededException {
+        put(destination, filename, Channels.newChannel(source));
+    }
 
+    // Izvrsavanje grupe operacija kao jedne celine: cela grupa se proverava unapred (privilegije, ogranicenja, kvota),
+    // pa se izvrsava pod jednim zakljucavanjem. Obrisane i zamenjene stavke se samo preimenuju u folder za pripremu,
+    // pa se pri gresci sve operacije ponistavaju obrnutim redom. Zauzece i zurnal se azuriraju jednom za celu grupu.
+    public void executeBatch(StorageBatch batch) throws InsufficientPrivilegesException, FileNotFoundException, FileLimitExceededException, InvalidExtensionException, StorageSizeExceededException, OperationFailedException {
+        if (batch.isEmpty())
+            return;
+
+        BatchPlan plan = BatchPlan.validate(batch, currentStorage);
+        BatchUndoLog undoLog = new BatchUndoLog(Paths.get(currentStorage.getRootDirectory(), TrashReclaimer.TRASH_FOLDER));
+        try (plan; StripedPathLock.Locked locked = currentStorage.getPathLocks().lock(plan.getLockedDirectories())) {
+            long storedBytes = 0;
             try {
-                result = Files.copy(sourcePath, Paths.get(currentStorage.getRootDirectory() + "/" + destination + "/" + sourcePath.getFileName()), StandardCopyOption.REPLACE_EXISTING);
-                currentStorage.setCurrentStorageSize(currentStorage.getCurrentStorageSize() + Files.size(sourcePath));
-                currentStorage.updateConfig();
-            } catch (IOException e1) {
-                e1.printStackTrace();
+                for (BatchStep step : plan.getSteps())
+                    storedBytes += applyStep(step, undoLog);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                undoLog.rollback();
+                throw new OperationFailedException();
+            }
+
+            // Obrisane i zamenjene stavke: sa brzim brisanjem ih oslobadja pozadinska nit, inace se brisu odmah
+            long freedBytes = 0;
+            Path staging = undoLog.getStagingDirectory();
+            if (staging != null) {
+                if (fastDeleteEnabled) {
+                    currentStorage.startTrashReclaimer(trashReclaimRate);
+                    currentStorage.getTrashReclaimer().reclaimLater(staging, undoLog.getStagedBytes());
+                } else {
+                    DeleteResult result = runTreeDeleter(staging, directory -> true);
+                    freedBytes = result.getFreedBytes();
+                    // Ono sto nije obrisano ostaje u .trash folderu i brise se pri sledecem pokretanju
+                    if (!result.isComplete())
+                        result.getFailure().printStackTrace();
+                }
+            }
+            plan.commit(storedBytes - freedBytes);
+        }
+    }
+
+    // Jedna operacija grupe: izmena na disku, brojaci, indeks i zauzece po folderima, i korak za ponistavanje.
+    // Vraca bajtove koje je operacija dodala u skladiste.
+    private long applyStep(BatchStep step, BatchUndoLog undoLog) throws IOException {
+        String target = step.getTarget();
+        Path targetPath = Paths.get(target);
+
+        switch (step.getType()) {
+            case CREATE_FOLDER: {
+                Files.createDirectory(targetPath);
+                countEntryAdded(target);
+                refreshIndex(target);
+                accountDirectoryAdded(target);
+                undoLog.record(() -> {
+                    Files.delete(targetPath);
+                    countEntryRemoved(target);
+                    refreshIndex(target);
+                    accountDirectoryRemoved(target);
+                });
+                return 0;
             }
+            case PUT: {
+                boolean replacedExisting = Files.exists(targetPath);
+                long replacedSize = replacedExisting ? Files.size(targetPath) : 0;
+                if (replacedExisting) {
+                    Path staged = undoLog.stage(targetPath, replacedSize);
+                    undoLog.record(() -> Files.move(staged, targetPath, StandardCopyOption.ATOMIC_MOVE));
+                }
 
-            if(result == null)
+                long storedBytes;
+                BlobStore blobStore = currentStorage.getBlobStore();
+                try {
+                    if (blobStore != null) {
+                        storedBytes = blobStore.store(Paths.get(step.getSource()), targetPath);
+                    } else {
+                        FileIngester.ingest(Paths.get(step.getSource()), targetPath, currentStorage.getStagingDirectory(), ingestMode);
+                        storedBytes = step.getSize();
+                    }
+                } catch (IOException e) {
+                    // Delimicno upisan fajl se uklanja pre ponistavanja prethodnih koraka
+                    deleteQuietly(targetPath);
+                    throw e;
+                }
+                if (replacedExisting)
+                    accountFileRemoved(target, replacedSize);
+                else
+                    countEntryAdded(target);
+                refreshIndex(target);
+                accountFileAdded(target, step.getSize());
+                undoLog.record(() -> {
+                    if (blobStore != null)
+                        blobStore.remove(targetPath);
+                    else
+                        Files.delete(targetPath);
+                    accountFileRemoved(target, step.getSize());
+                    if (replacedExisting)
+                        accountFileAdded(target, replacedSize);
+                    else
+                        countEntryRemoved(target);
+                    refreshIndex(target);
+                });
+                return storedBytes;
+            }
+            case MOVE: {
+                String source = step.getSource();
+                Path sourcePath = Paths.get(source);
+                boolean directory = Files.isDirectory(sourcePath);
+                long size = directory ? 0 : Files.size(sourcePath);
+                boolean replacedExisting = Files.exists(targetPath);
+                long replacedSize = replacedExisting ? Files.size(targetPath) : 0;
+                if (replacedExisting) {
+                    Path staged = undoLog.stage(targetPath, replacedSize);
+                    undoLog.record(() -> Files.move(staged, targetPath, StandardCopyOption.ATOMIC_MOVE));
+                }
+
+                Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+                countEntryRemoved(source);
+                if (!replacedExisting)
+                    countEntryAdded(target);
+                refreshIndex(source);
+                refreshIndex(target);
+                blobMoved(source, target);
+                if (directory) {
+                    accountDirectoryRemoved(source);
+                    accountDirectoryAdded(target);
+                } else {
+                    if (replacedExisting)
+                        accountFileRemoved(target, replacedSize);
+                    accountFileRemoved(source, size);
+                    accountFileAdded(target, size);
+                }
+                undoLog.record(() -> {
+                    Files.move(targetPath, sourcePath, StandardCopyOption.ATOMIC_MOVE);
+                    countEntryAdded(source);
+                    if (!replacedExisting)
+                        countEntryRemoved(target);
+                    refreshIndex(source);
+                    refreshIndex(target);
+                    blobMoved(target, source);
+                    if (directory) {
+                        accountDirectoryRemoved(target);
+                        accountDirectoryAdded(source);
+                    } else {
+                        accountFileRemoved(target, size);
+                        accountFileAdded(source, size);
+                        if (replacedExisting)
+                            accountFileAdded(target, replacedSize);
+                    }
+                });
+                return 0;
+            }
+            case DELETE: {
+                boolean directory = Files.isDirectory(targetPath);
+                long size = directory ? 0 : Files.size(targetPath);
+                Path staged = undoLog.stage(targetPath, directory ? usedBytes(target) : size);
+                countEntryRemoved(target);
+                refreshIndex(target);
+                if (directory)
+                    accountDirectoryRemoved(target);
+                else
+                    accountFileRemoved(target, size);
+                undoLog.record(() -> {
+                    Files.move(staged, targetPath, StandardCopyOption.ATOMIC_MOVE);
+                    countEntryAdded(target);
+                    refreshIndex(target);
+                    if (directory)
+                        accountDirectoryAdded(target);
+                    else
+                        accountFileAdded(target, size);
+                });
+                return 0;
+            }
+            default:
                 throw new OperationFailedException();
         }
     }
 
-    @Override
-    public Collection<String> list(String path, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
-        String destinationPath;
-        if(path.equalsIgnoreCase("root"))
-            destinationPath = currentStorage.getRootDirectory();
-        else
-            destinationPath = currentStorage.getRootDirectory() + "/" + path;
+    // Brzo brisanje: stavka se preimenuje u .trash i odmah nestaje iz skladista, a zauzece oslobadja pozadinska nit
+    private void moveToTrash(String fullPath, File file) {
+        boolean directory = file.isDirectory();
+        FolderPrivilegeResolver resolver = currentStorage.getPrivilegeResolver(currentStorage.getCurrentUser());
+        if (directory && !resolver.isAllowedInSubtree(fullPath, Privileges.DELETE))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
 
-        Collection<String> toReturn = new ArrayList<>();
+        long size = directory ? 0 : file.length();
+        currentStorage.startTrashReclaimer(trashReclaimRate);
+        try {
+            currentStorage.getTrashReclaimer().moveToTrash(file.toPath(), directory ? usedBytes(fullPath) : size);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new FileDeleteFailedException();
+        }
 
-        // Provera da li je trenutni korisnik null
-        if(currentStorage.getCurrentUser() == null)
-            throw new CurrentUserIsNullException();
+        countEntryRemoved(fullPath);
+        refreshIndex(fullPath);
+        if (directory)
+            accountDirectoryRemoved(fullPath);
+        else
+            accountFileRemoved(fullPath, size);
+    }
 
-        // Provera privilegija:
-        if(!currentStorage.getCurrentUser().getPrivileges().contains(Privileges.VIEW)){
-            throw new InsufficientPrivilegesException();
+    // Brisanje foldera sa celim sadrzajem: privilegija se proverava unapred za celo podstablo (folder se brise
+    // u celosti ili nikako), a zauzece, zurnal, indeks i brojaci se azuriraju jednom za celo stablo
+    private void deleteTree(String fullPath) {
+        FolderPrivilegeResolver resolver = currentStorage.getPrivilegeResolver(currentStorage.getCurrentUser());
+        if (!resolver.isAllowedInSubtree(fullPath, Privileges.DELETE))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
+
+        DeleteResult result = runTreeDeleter(Paths.get(fullPath), directory -> resolver.isAllowed(directory, Privileges.DELETE));
+
+        currentStorage.changeStorageSize(-result.getFreedBytes());
+        accountDirectoryRemoved(fullPath);
+        if (new File(fullPath).exists()) {
+            // Stablo je obrisano delimicno - zauzece i indeks preostalog dela se ponovo citaju sa diska
+            accountDirectoryAdded(fullPath);
+            if (currentStorage.getDirectoryIndex() != null)
+                currentStorage.getDirectoryIndex().rescan(fullPath);
+            if (currentStorage.getNameIndex() != null)
+                currentStorage.getNameIndex().rescan(fullPath);
+            if (currentStorage.getExtensionIndex() != null)
+                currentStorage.getExtensionIndex().rescan(fullPath);
+        } else {
+            countEntryRemoved(fullPath);
+            refreshIndex(fullPath);
         }
 
-        // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(destinationPath)) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(destinationPath).contains(Privileges.VIEW))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
+        if (!result.isComplete())
+            throw result.getFailure();
+    }
+
+    // Azuriranje brojaca, indeksa i zauzeca posle upisa jednog fajla
+    private void commitPut(Admission admission, Path target, boolean replacedExisting, long size, long replacedSize, long storedBytes) {
+        if (!replacedExisting)
+            admission.entryAdded(target.toString());
+        admission.storageChanged(storedBytes, size);
+        refreshIndex(target.toString());
+        if (replacedSize > 0)
+            accountFileRemoved(target.toString(), replacedSize);
+        accountFileAdded(target.toString(), size);
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null)
+            return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
 
-        // Provera da li putanja postoji:
-        if(!new File(destinationPath).exists())
-            throw new FileNotFoundException();
+    // Paralelni put: fajlovi se kopiraju na ogranicenom broju niti (setPutParallelism), kvota i broj fajlova
+    // se proveravaju jednom za celu grupu, a zauzece i konfiguracija se azuriraju jednom na kraju.
+    // Fajl koji ne postoji, vec je u skladistu ili nije uspeo da se kopira se prijavljuje u svom rezultatu i ne prekida ostale.
+    public List<PutResult> putParallel(String destination, String ...sources) throws InsufficientPrivilegesException, FileNotFoundException, FileLimitExceededException, InvalidExtensionException, StorageSizeExceededException {
+
+        String fullPath = currentStorage.getRootDirectory() + "/" + destination;
 
-        // Uzimanje fajl liste u root-u:
-        List<File> fileList = getFileList(destinationPath);
+        List<PutResult> results = new ArrayList<>();
+        List<PutResult> pending = new ArrayList<>();
+        Set<String> filenames = new HashSet<>();
+        AdmissionRequest request = new AdmissionRequest(fullPath, Privileges.CREATE);
+        for(String source: sources) {
+            File sourceFile = new File(source);
+            PutResult result;
+            if(!sourceFile.exists())
+                result = PutResult.failed(source, new FileNotFoundException());
+            else if(source.contains(currentStorage.getRootDirectory()) || !filenames.add(sourceFile.getName()))
+                result = PutResult.failed(source, new FileAlreadyInStorageException());
+            else {
+                result = new PutResult(source);
+                request.addFile(source, sourceFile.length());
+                pending.add(result);
+            }
+            results.add(result);
+        }
+        Path staging;
+        try {
+            staging = currentStorage.getStagingDirectory();
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new OperationFailedException();
+        }
+        Admission admission = currentStorage.getAdmissionPolicy().admit(request, currentStorage);
+        try (admission) {
 
-        if(searchSubdirectories) {
-            for (File file : fileList) {
-                if(file.isFile()){
-                    toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                } else {
-                    String fullPath = file.getPath();
-                    fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                    toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "DIR");
-                    toReturn = listRecursive(fullPath, true, toReturn);
-                }
+            // Kopiranje ide bez zakljucavanja foldera; folder se zakljucava samo za zamenu svakog fajla
+            try (SharedPool<ParallelFileCopier>.Lease copier = owner.putCopiers.acquire(() -> new ParallelFileCopier(Runtime.getRuntime().availableProcessors()))) {
+                copier.get().copyAll(pending, fullPath, staging, ingestMode, currentStorage.getBlobStore(), currentStorage.getPathLocks());
             }
-        } else {
-            for (File file : fileList) {
-                if(file.isFile()){
-                    toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                } else {
-                    toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "DIR");
+
+            // Azuriranje zauzeca jednom za sve uspesno kopirane fajlove
+            try (StripedPathLock.Locked locked = currentStorage.getPathLocks().lock(fullPath)) {
+                long sizeChange = 0;
+                for(PutResult result: pending) {
+                    if(!result.isSuccessful())
+                        continue;
+                    String target = result.getTarget().toString();
+                    if (!result.isReplacedExisting())
+                        admission.entryAdded(target);
+                    refreshIndex(target);
+                    if (result.getReplacedSize() > 0)
+                        accountFileRemoved(target, result.getReplacedSize());
+                    accountFileAdded(target, result.getSize());
+                    sizeChange += result.getStoredBytes();
                 }
+                admission.storageChanged(sizeChange, admission.getReservedBytes());
             }
         }
+        return results;
+    }
+
+    @Override
+    public Collection<String> list(String path, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        Collection<String> toReturn = new ArrayList<>();
+        for (FileEntry entry : listEntries(path, searchSubdirectories))
+            toReturn.add(entry.toListingString());
         return toReturn;
     }
 
 
     @Override
     public Collection<String> list(String path, String argument, Operations operation, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        return toListingStrings(listEntries(path, argument, operation, searchSubdirectories), operation);
+    }
 
-        String destinationPath;
-        if(path.equalsIgnoreCase("root"))
-            destinationPath = currentStorage.getRootDirectory();
-        else
-            destinationPath = currentStorage.getRootDirectory() + "/" + path;
+    // Isto sto i list(path, argument, operation, searchSubdirectories), ali vraca samo prvih limit stavki
+    // (npr. 100 najnovijih fajlova sa SORT_BY_DATE_MODIFIED_DESC)
+    public Collection<String> list(String path, String argument, Operations operation, int limit, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        return toListingStrings(listEntries(path, argument, operation, limit, searchSubdirectories), operation);
+    }
 
-        Collection<String> toReturn = new ArrayList<>();
+    // Isto sto i list(path, searchSubdirectories), ali vraca FileEntry objekte umesto formatiranih stringova
+    public List<FileEntry> listEntries(String path, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        return listEntries(path, null, null, searchSubdirectories);
+    }
 
-        // Provera da li je trenutni korisnik null
-        if(currentStorage.getCurrentUser() == null)
-            throw new CurrentUserIsNullException();
+    // Isto sto i list(path, argument, operation, searchSubdirectories), ali vraca FileEntry objekte.
+    // Stavke se prave jednom tokom obilaska i sortiraju se direktno, bez ponovnog citanja atributa sa diska.
+    public List<FileEntry> listEntries(String path, String argument, Operations operation, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        String destinationPath = checkListAccess(path);
+        List<FileEntry> entries = new ArrayList<>();
+        walkEntries(destinationPath, argument, operation, searchSubdirectories, entries::add, false);
 
-        // Provera privilegija:
-        if(!currentStorage.getCurrentUser().getPrivileges().contains(Privileges.VIEW)){
-            throw new InsufficientPrivilegesException();
+        Comparator<FileEntry> comparator = getSortComparator(operation);
+        if (comparator != null)
+            entries.sort(comparator);
+
+        return entries;
+    }
+
+    // Prvih limit stavki iz listEntries(path, argument, operation, searchSubdirectories).
+    // Kod sortiranja se koristi ograniceni heap, pa se cela lista nikad ne pravi niti sortira.
+    public List<FileEntry> listEntries(String path, String argument, Operations operation, int limit, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        String destinationPath = checkListAccess(path);
+        Comparator<FileEntry> comparator = getSortComparator(operation);
+
+        // Bez sortiranja obilazak staje cim se nadje limit stavki
+        if (comparator == null) {
+            List<FileEntry> entries = new ArrayList<>();
+            if (limit <= 0)
+                return entries;
+            walkEntries(destinationPath, argument, operation, searchSubdirectories, entry -> {
+                entries.add(entry);
+                return entries.size() < limit;
+            }, true);
+            return entries;
         }
 
-        // Provera privilegija na nivou foldera:
-        if (currentStorage.getCurrentUser().getFolderPrivileges().containsKey(destinationPath)) {
-            if(!currentStorage.getCurrentUser().getFolderPrivileges().get(destinationPath).contains(Privileges.VIEW))
-                throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
+        TopKCollector collector = new TopKCollector(comparator, limit);
+        walkEntries(destinationPath, argument, operation, searchSubdirectories, entry -> {
+            collector.accept(entry);
+            return true;
+        }, false);
+        return collector.toSortedList();
+    }
+
+
+    // Upit sa vise uslova, sortiranjem i offset/limit u jednom obilasku. Uslovi se proveravaju nad atributima procitanim
+    // pri obilasku (FileEntry se pravi samo za stavke koje prolaze), iskljuceni folderi i folderi dublji od maxDepth se ne
+    // otvaraju, a upit samo za fajlove po ekstenziji ili imenu ide preko indeksa (ako je ukljucen) umesto obilaska.
+    public List<FileEntry> query(StorageQuery query) throws InsufficientPrivilegesException, FileNotFoundException {
+        String topLevelPath = new File(checkListAccess(query.getPath())).getPath();
+        Comparator<FileEntry> comparator = query.getComparator();
+        int wanted = query.getWanted();
+
+        // Sa sortiranjem i limitom se cuva samo offset + limit najboljih stavki; bez sortiranja obilazak staje
+        // cim se nadje offset + limit stavki
+        List<FileEntry> matched = new ArrayList<>();
+        TopKCollector collector = comparator != null && wanted < Integer.MAX_VALUE ? new TopKCollector(comparator, wanted) : null;
+        Predicate<FileEntry> sink = entry -> {
+            if (collector != null) {
+                collector.accept(entry);
+                return true;
+            }
+            matched.add(entry);
+            return comparator != null || matched.size() < wanted;
+        };
+
+        List<String> indexed = queryIndexes(topLevelPath, query);
+        if (indexed != null) {
+            for (String path : indexed) {
+                File file = new File(path);
+                if (!isWithinQuery(topLevelPath, path, query))
+                    continue;
+                if (!file.getParent().equals(topLevelPath) && !hasFolderPrivilege(file.getParent(), Privileges.VIEW))
+                    continue;
+                IndexedFile attributes = IndexedFile.read(file);
+                if (attributes == null || !query.matches(attributes.getName(), false, attributes.length(), lastModified(attributes)))
+                    continue;
+                FileEntry entry = toFileEntry(attributes);
+                if (entry != null && !sink.test(entry))
+                    break;
+            }
+        } else {
+            queryDirectory(topLevelPath, 0, query, sink);
         }
 
-        // Provera da li postoji fajl:
-        if(!new File(destinationPath).exists())
-            throw new FileNotFoundException();
+        List<FileEntry> result = matched;
+        if (collector != null)
+            result = collector.toSortedList();
+        else if (comparator != null)
+            result.sort(comparator);
+        if (query.getOffset() >= result.size())
+            return new ArrayList<>();
+        return new ArrayList<>(result.subList(query.getOffset(), Math.min(result.size(), wanted)));
+    }
 
-        List<File> fileList = getFileList(destinationPath);
+    // Lenjo listanje preko DirectoryStream-a, bez pravljenja cele liste u memoriji.
+    // Izlaz je isti kao kod list(path, searchSubdirectories); vraceni stream se mora zatvoriti (try-with-resources).
+    public Stream<String> listStream(String path, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        Path start = Paths.get(checkListAccess(path));
+        Predicate<String> viewable = viewableFolders();
+        return openListing(start, searchSubdirectories)
+                .filter(p -> p.getParent().equals(start) || viewable.test(p.getParent().toString()))
+                .map(this::formatListEntry)
+                .filter(Objects::nonNull);
+    }
 
-        if (operation == Operations.FILTER_EXTENSION) {
-            String extension = argument;
+    // Listanje po stranama: continuationToken je relativna putanja poslednje vracene stavke (null za prvu stranu).
+    // Folderi se obilaze sortirano po imenu, pa svaka strana nastavlja odmah iza tokena bez prolaska kroz prethodne strane,
+    // i to i kada je stavka iz tokena u medjuvremenu obrisana.
+    public ListingPage listPage(String path, boolean searchSubdirectories, String continuationToken, int pageSize) throws InsufficientPrivilegesException, FileNotFoundException {
+        Path start = Paths.get(checkListAccess(path));
+        List<String> seek = new ArrayList<>();
+        if (continuationToken != null) {
+            for (Path name : Paths.get(continuationToken))
+                seek.add(name.toString());
+        }
 
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        if (file.getName().endsWith(extension))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    } else {
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        toReturn = listRecursive(fullPath, extension, Operations.FILTER_EXTENSION, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        if (file.getName().endsWith(extension))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    }  //toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "DIR");
+        // Jedna stavka vise od velicine strane govori da li postoji sledeca strana
+        List<Path> found = new ArrayList<>();
+        pageDirectory(start, searchSubdirectories, seek.isEmpty() ? null : seek, 0, pageSize + 1, Arrays.asList(internalDirectories()), viewableFolders(), found);
 
+        List<String> entries = new ArrayList<>();
+        List<Path> page = found.subList(0, Math.max(0, Math.min(pageSize, found.size())));
+        for (Path entry : page) {
+            String formatted = formatListEntry(entry);
+            if (formatted != null)
+                entries.add(formatted);
+        }
+        String nextToken = null;
+        if (found.size() > pageSize)
+            nextToken = page.isEmpty() ? continuationToken : start.relativize(page.get(page.size() - 1)).toString();
+        return new ListingPage(entries, nextToken);
+    }
+
+    // Sortirani obilazak za listPage; seek su delovi putanje tokena dok token nije predjen (inace null).
+    // Kao i kod list(), folderi iz podfoldera se ne vracaju, a sadrzaj foldera bez VIEW privilegije se preskace (ali se u njih ulazi).
+    // Vraca false kada je skupljeno wanted stavki.
+    private boolean pageDirectory(Path directory, boolean searchSubdirectories, List<String> seek, int depth, int wanted, List<String> internal, Predicate<String> viewable, List<Path> found) {
+        String[] names = directory.toFile().list();
+        if (names == null)
+            return true;
+        Arrays.sort(names);
+        boolean listed = depth == 0 || viewable.test(directory.toString());
+
+        String seekName = seek != null ? seek.get(depth) : null;
+        for (String name : names) {
+            Path child = directory.resolve(name);
+            if (depth == 0 && internal.contains(child.toString()))
+                continue;
+            boolean isDirectory = Files.isDirectory(child);
+
+            if (seekName != null) {
+                int compared = name.compareTo(seekName);
+                if (compared < 0)
+                    continue;
+                seekName = null;
+                if (compared == 0) {
+                    // Stavka iz tokena je vec vracena; ako je folder, nastavlja se u njegovom sadrzaju
+                    List<String> rest = depth + 1 < seek.size() ? seek : null;
+                    if (isDirectory && searchSubdirectories && !pageDirectory(child, true, rest, depth + 1, wanted, internal, viewable, found))
+                        return false;
+                    continue;
                 }
             }
-        } else if (operation == Operations.FILTER_FILENAME) {
-            String filename = argument;
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        if (file.getName().contains(filename))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    } else {
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        toReturn = listRecursive(fullPath, filename, Operations.FILTER_FILENAME, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        if (file.getName().contains(filename))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    }
-                }
-            }
-        } else if (operation == Operations.SORT_BY_NAME_ASC || operation == Operations.SORT_BY_NAME_DESC) {
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        toReturn.add(file.getPath());
-                    } else {
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        toReturn.add(file.getPath());
-                        toReturn = listRecursive(fullPath, null, operation, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        toReturn.add(file.getPath());
-                    } else {
-                        toReturn.add(file.getPath());
-                    }
-                }
-            }
-            List<File> outputFiles = new ArrayList<>();
-            for(String outputPath: toReturn){
-                outputFiles.add(new File(outputPath));
-            }
-            if(operation == Operations.SORT_BY_NAME_ASC)
-                outputFiles.sort(new FileNameComparator());
-            else
-                outputFiles.sort(new FileNameComparator().reversed());
-            toReturn.clear();
-            for(File f : outputFiles){
-                if(f.isFile())
-                    toReturn.add(f.getName() + " --- " + f.getPath() + " --- " + f.length() / 1024 + " KB" + " --- " + "FILE");
-                else
-                    toReturn.add(f.getName() + " --- " + f.getPath() + " --- " + f.length() / 1024 + " KB" + " --- " + "DIR");
-            }
-        } else if (operation == Operations.SORT_BY_DATE_MODIFIED_ASC || operation == Operations.SORT_BY_DATE_MODIFIED_DESC) {
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        toReturn.add(file.getPath());
-                    } else {
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        toReturn.add(file.getPath());
-                        toReturn = listRecursive(fullPath, null, operation, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        toReturn.add(file.getPath());
-                    } else {
-                        toReturn.add(file.getPath());
-                    }
-                }
-            }
-            SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
-            List<File> outputFiles = new ArrayList<>();
-            for(String outputPath: toReturn){
-                outputFiles.add(new File(outputPath));
-            }
-            if(operation == Operations.SORT_BY_DATE_MODIFIED_ASC)
-                outputFiles.sort(new FileModifiedDateComparator());
-            else
-                outputFiles.sort(new FileModifiedDateComparator().reversed());
-            toReturn.clear();
-            for(File f : outputFiles){
-
-                if(f.isFile())
-                    toReturn.add(f.getName() + " --- " + f.getPath() + " --- " + f.length() / 1024 + " KB" + " --- " + "FILE" + " --- " + sdf.format(f.lastModified()));
-                else
-                    toReturn.add(f.getName() + " --- " + f.getPath() + " --- " + f.length() / 1024 + " KB" + " --- " + "DIR" + " --- " + sdf.format(f.lastModified()));
+
+            if (listed && (depth == 0 || !isDirectory)) {
+                found.add(child);
+                if (found.size() >= wanted)
+                    return false;
             }
+            if (isDirectory && searchSubdirectories && !pageDirectory(child, true, null, depth + 1, wanted, internal, viewable, found))
+                return false;
         }
-        return toReturn;
+        return true;
     }
 
     @Override
@@ -670,6 +1134,18 @@ public class LocalFileStorageImplementation implements FileStorage {
                 e.printStackTrace();
             }
 
+            // Ako postoji zurnal, stanje je snapshot iz config.json + zapisi iz zurnala (ukljucujuci promene korisnika)
+            StorageModel journaledModel = null;
+            if (OperationJournal.exists(path)) {
+                try {
+                    journaledModel = objectMapper.readValue(new File(path + "/config.json"), StorageModel.class);
+                    OperationJournal.replay(path, journaledModel);
+                    users = journaledModel.getUserList();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
             boolean found = false;
 
             // Provera kredencijala - uporedjivanje prosledjenih username i password-a i procitanih iz users.json fajla
@@ -678,10 +1154,11 @@ public class LocalFileStorageImplementation implements FileStorage {
                     found = true;
                     try {
                         // Ako se podaci User-a match-uju, procitaj config, setuj trenutni storage i dodaj skladiste u listu skladista
-                        StorageModel storageModel = objectMapper.readValue(new File(path + "/config.json"), StorageModel.class);
+                        StorageModel storageModel = journaledModel != null ? journaledModel : objectMapper.readValue(new File(path + "/config.json"), StorageModel.class);
                         storageModelList.add(storageModel);
                         setCurrentStorage(storageModel);
                         currentStorage.setCurrentUser(u);
+                        prepareStorage();
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
@@ -697,6 +1174,7 @@ public class LocalFileStorageImplementation implements FileStorage {
             StorageModel storageModel = new StorageModel(user, path);
             this.storageModelList.add(storageModel);
             setCurrentStorage(storageModel);
+            prepareStorage();
         }
     }
 
@@ -724,7 +1202,8 @@ public class LocalFileStorageImplementation implements FileStorage {
         // Dodavanje novog para direktorijum-brFajlova u HashMap trenutnog skladista
         currentStorage.getMaxNumberOfFilesInDirectory().put(fullPath, numberOfFiles);
         currentStorage.setMaxNumberOfFilesInDirectorySet(true);
-        currentStorage.updateConfig();
+        currentStorage.invalidateAdmissionPolicy();
+        currentStorage.journal(JournalRecord.fileLimit(fullPath, numberOfFiles));
     }
 
     @Override
@@ -741,7 +1220,7 @@ public class LocalFileStorageImplementation implements FileStorage {
 
         currentStorage.setStorageSizeLimit(l);
         currentStorage.setStorageSizeLimitSet(true);
-        currentStorage.updateConfig();
+        currentStorage.journal(JournalRecord.storageSizeLimit(l));
     }
 
     @Override
@@ -757,7 +1236,8 @@ public class LocalFileStorageImplementation implements FileStorage {
         }
 
         currentStorage.getUnsupportedExtensions().add(extension);
-        currentStorage.updateConfig();
+        currentStorage.invalidateAdmissionPolicy();
+        currentStorage.journal(JournalRecord.restrictedExtension(extension));
     }
 
     @Override
@@ -781,8 +1261,8 @@ public class LocalFileStorageImplementation implements FileStorage {
 
         user.setPrivileges(privilegesSet);
         currentStorage.getUserList().add(user);
-        currentStorage.updateUsers();
-        currentStorage.updateConfig();
+        currentStorage.invalidatePrivilegeResolvers();
+        currentStorage.journal(JournalRecord.userAdded(user));
     }
 
     @Override
@@ -806,8 +1286,8 @@ public class LocalFileStorageImplementation implements FileStorage {
         // Ako postoji u listi, obrisi, ako ne, izbaci exception
         if(found) {
             currentStorage.getUserList().remove(toRemove);
-            currentStorage.updateUsers();
-            currentStorage.updateConfig();
+            currentStorage.invalidatePrivilegeResolvers();
+            currentStorage.journal(JournalRecord.userRemoved(toRemove.getUsername()));
         }
         else
             throw new UserNotFoundException();
@@ -839,6 +1319,41 @@ public class LocalFileStorageImplementation implements FileStorage {
         currentStorage.updateUsers();
     }
 
+    // Sesija za korisnika trenutnog skladista; ne menja korisnika ulogovanog preko login(),
+    // pa vise korisnika moze imati otvorene sesije u isto vreme
+    public StorageSession openSession(String username, String password) throws UserNotFoundException {
+
+        User user = new User(username, password);
+        User findUser = null;
+
+        // Prodji kroz sve usere:
+        for(User u: currentStorage.getUserList()){
+            if(u.equals(user))
+                findUser = u;
+        }
+
+        if(findUser == null)
+            throw new UserNotFoundException();
+
+        // Sesija ima sopstveni pogled na skladiste, pa ne zavisi od kasnije promene trenutnog skladista
+        StorageSession session = new StorageSession(new LocalFileStorageImplementation(this, currentStorage), currentStorage, findUser);
+        currentStorage.getSessions().put(session.getId(), session);
+        return session;
+    }
+
+    // Sesija nad skladistem na datoj putanji - skladiste se otvara (ili pravi) ako vec nije otvoreno
+    public StorageSession openSession(String path, String username, String password) throws UserNotFoundException {
+        String rootDirectory = new File(path).getPath();
+        for (StorageModel storageModel : storageModelList) {
+            if (new File(storageModel.getRootDirectory()).getPath().equals(rootDirectory)) {
+                setCurrentStorage(storageModel);
+                return openSession(username, password);
+            }
+        }
+        initializeStorage(path, username, password);
+        return openSession(username, password);
+    }
+
     @Override
     public void logout() throws UserNotFoundException, UserLogoutException{
 
@@ -883,206 +1398,569 @@ public class LocalFileStorageImplementation implements FileStorage {
         else if(privileges.contains(Privileges.VIEW))
             privilegesToAdd.add((Privileges.VIEW));
 
-        user.getFolderPrivileges().put(fullPath, privilegesToAdd);
-        currentStorage.updateUsers();
-        currentStorage.updateConfig();
+        currentStorage.setFolderPrivileges(user, fullPath, privilegesToAdd);
+        currentStorage.journal(JournalRecord.folderPrivileges(user.getUsername(), fullPath, privilegesToAdd));
     }
 
 
-    // Pomocna metoda za proveravanje ekstenzije prilikom dodavanja fajla u skladiste
-    private boolean checkExtensions(String filename){
-        boolean found = false;
-        for(String extension: currentStorage.getUnsupportedExtensions()){
-            if (filename.endsWith(extension)) {
-                found = true;
-                break;
+    // Obilazak foldera - svaka stavka koja prolazi pravila listanja se prosledjuje sink-u; kad sink vrati false, obilazak staje.
+    // Ako sink moze da prekine obilazak (stopsEarly), ne koristi se paralelni obilazak jer on unapred obilazi celo stablo.
+    private void walkEntries(String destinationPath, String argument, Operations operation, boolean searchSubdirectories, Predicate<FileEntry> sink, boolean stopsEarly) {
+        String topLevelPath = new File(destinationPath).getPath();
+        List<String> indexed = searchIndexes(topLevelPath, argument, operation, searchSubdirectories);
+        List<File> walked = indexed == null && searchSubdirectories && !stopsEarly ? walkParallel(destinationPath) : null;
+        if (indexed != null) {
+            // Indeks vraca samo fajlove koji prolaze filter, pa se ostatak stabla ne obilazi
+            for (String path : indexed) {
+                File file = new File(path);
+                boolean topLevel = file.getParent().equals(topLevelPath);
+                if (!topLevel && !hasFolderPrivilege(file.getParent(), Privileges.VIEW))
+                    continue;
+                FileEntry entry = toFileEntry(file);
+                if (entry != null && isListed(entry, topLevel, argument, operation) && !sink.test(entry))
+                    return;
             }
+        } else if (walked != null) {
+            for (File file : walked) {
+                boolean topLevel = file.getParent().equals(topLevelPath);
+                if (!topLevel && !hasFolderPrivilege(file.getParent(), Privileges.VIEW))
+                    continue;
+                FileEntry entry = toFileEntry(file);
+                if (entry != null && isListed(entry, topLevel, argument, operation) && !sink.test(entry))
+                    return;
+            }
+        } else {
+            collectEntries(destinationPath, true, argument, operation, searchSubdirectories, sink);
         }
-        return found;
     }
 
-    private Collection<String> listRecursive(String path, boolean searchSubdirectories, Collection<String> toReturn) throws InsufficientPrivilegesException, FileNotFoundException {
+    // Sekvencijalni obilazak foldera (i podfoldera ako je searchSubdirectories true).
+    // Sadrzaj podfoldera za koje korisnik nema VIEW privilegiju se ne ispisuje, ali se u njih i dalje ulazi
+    // jer dublji folder moze imati sopstvenu privilegiju. Vraca false kada je sink prekinuo obilazak.
+    private boolean collectEntries(String directoryPath, boolean topLevel, String argument, Operations operation, boolean searchSubdirectories, Predicate<FileEntry> sink) {
+        boolean viewable = topLevel || hasFolderPrivilege(directoryPath, Privileges.VIEW);
+        for (File file : getFileList(directoryPath)) {
+            FileEntry entry = toFileEntry(file);
+            if (entry == null)
+                continue;
+            if (viewable && isListed(entry, topLevel, argument, operation) && !sink.test(entry))
+                return false;
+            if (searchSubdirectories && entry.isDirectory() && !collectEntries(entry.getPath(), false, argument, operation, true, sink))
+                return false;
+        }
+        return true;
+    }
 
-        String destinationPath = currentStorage.getRootDirectory() + "/" + path;
+    // Interni folderi skladista koje obilazak preskace
+    private String[] internalDirectories() {
+        String rootDirectory = currentStorage.getRootDirectory();
+        return new String[]{Paths.get(rootDirectory, TrashReclaimer.TRASH_FOLDER).toString(), Paths.get(rootDirectory, BlobStore.BLOB_FOLDER).toString()};
+    }
 
-        // Provera privilegija:
-        if(!currentStorage.getCurrentUser().getPrivileges().contains(Privileges.VIEW)){
-            throw new InsufficientPrivilegesException();
-        }
+    // Nova stavka ne sme da zauzme ime internog foldera skladista (.blobs, .trash)
+    private void checkNotInternal(String path) {
+        if (currentStorage.isInternalPath(path))
+            throw new OperationFailedException();
+    }
 
-        // Provera privilegija foldera:
+    // Pravljenje stavke listanja; ako se vodi zauzece po folderima, velicina foldera je zbir njegovog sadrzaja
+    private FileEntry toFileEntry(File file) {
+        // .blobs i .trash folderi su interni deo skladista i ne prikazuju se
+        if (BlobStore.isBlobPath(currentStorage.getRootDirectory(), file.getPath()))
+            return null;
+        if (TrashReclaimer.isTrashPath(currentStorage.getRootDirectory(), file.getPath()))
+            return null;
+        FileEntry entry = FileEntry.of(file, currentStorage.getRootDirectory());
+        if (entry != null && entry.isDirectory() && currentStorage.getUsageAccounting() != null) {
+            DirectoryUsage usage = currentStorage.getUsageAccounting().getUsage(entry.getPath());
+            if (usage != null)
+                return entry.withSize(usage.getBytes());
+        }
+        if (entry != null && !entry.isDirectory() && currentStorage.getBlobStore() != null)
+            return entry.withLastModified(currentStorage.getBlobStore().lastModified(entry.getPath(), entry.getLastModified()));
+        return entry;
+    }
 
+    // Datum izmene fajla; fajlovi koji sa deduplikacijom dele blob imaju logicki datum izmene (vreme upisa)
+    private long lastModified(IndexedFile file) {
+        BlobStore blobStore = currentStorage.getBlobStore();
+        return blobStore == null || file.isDirectory() ? file.lastModified() : blobStore.lastModified(file.getPath(), file.lastModified());
+    }
 
-        // Provera da li postoji prosledjeni path
-        if(!new File(destinationPath).exists())
-            throw new FileNotFoundException();
+    // Logicki datumi izmene fajlova koji dele blob prate premestanje
+    private void blobMoved(String source, String target) {
+        if (currentStorage.getBlobStore() != null)
+            currentStorage.getBlobStore().moved(new File(source).getPath(), new File(target).getPath());
+    }
 
-        // Uzimanje fajl liste u root-u:
-        List<File> fileList = getFileList(currentStorage.getRootDirectory() + "/" + path);
+    // Komparator za SORT_* operacije, null za ostale
+    private Comparator<FileEntry> getSortComparator(Operations operation) {
+        if (operation == Operations.SORT_BY_NAME_ASC)
+            return new FileEntryNameComparator();
+        else if (operation == Operations.SORT_BY_NAME_DESC)
+            return new FileEntryNameComparator().reversed();
+        else if (operation == Operations.SORT_BY_DATE_MODIFIED_ASC)
+            return new FileEntryModifiedDateComparator();
+        else if (operation == Operations.SORT_BY_DATE_MODIFIED_DESC)
+            return new FileEntryModifiedDateComparator().reversed();
+        return null;
+    }
 
-        if(searchSubdirectories) {
-            for (File file : fileList) {
-                if(file.isFile()){
-                    toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                } else {
-                    String fullPath = file.getPath();
-                    fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                    toReturn = listRecursive(fullPath, true, toReturn);
-                }
-            }
+    // Pravljenje stringova za list() - kod sortiranja po datumu izmene ispisuje se i datum
+    private Collection<String> toListingStrings(List<FileEntry> entries, Operations operation) {
+        Collection<String> toReturn = new ArrayList<>();
+        if (operation == Operations.SORT_BY_DATE_MODIFIED_ASC || operation == Operations.SORT_BY_DATE_MODIFIED_DESC) {
+            SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+            for (FileEntry entry : entries)
+                toReturn.add(entry.toListingString(sdf));
         } else {
-            for (File file : fileList) {
-                if(file.isFile())
-                    toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                else
-                    toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "DIR");
-            }
+            for (FileEntry entry : entries)
+                toReturn.add(entry.toListingString());
         }
         return toReturn;
     }
 
-    private Collection<String> listRecursive(String path, String argument, Operations operation, boolean searchSubdirectories, Collection<String> toReturn) throws InsufficientPrivilegesException, FileNotFoundException {
+    // Pravila listanja: bez operacije se folderi ispisuju samo na prvom nivou,
+    // filteri gledaju samo fajlove, a sortiranje uzima sve fajlove i foldere
+    private boolean isListed(FileEntry entry, boolean topLevel, String argument, Operations operation) {
+        if (operation == Operations.FILTER_EXTENSION)
+            return !entry.isDirectory() && entry.getName().endsWith(argument);
+        if (operation == Operations.FILTER_FILENAME)
+            return !entry.isDirectory() && entry.getName().contains(argument);
+        if (operation == null)
+            return !entry.isDirectory() || topLevel;
+        return true;
+    }
 
-        String destinationPath = currentStorage.getRootDirectory() + "/" + path;
+    // Provere za listanje (korisnik, privilegije, postojanje putanje) - vraca punu putanju foldera
+    private String checkListAccess(String path) throws InsufficientPrivilegesException, FileNotFoundException {
+        String destinationPath;
+        if(path.equalsIgnoreCase("root"))
+            destinationPath = currentStorage.getRootDirectory();
+        else
+            destinationPath = currentStorage.getRootDirectory() + "/" + path;
+
+        // Provera da li je trenutni korisnik null
+        if(currentStorage.getCurrentUser() == null)
+            throw new CurrentUserIsNullException();
 
         // Provera privilegija:
         if(!currentStorage.getCurrentUser().getPrivileges().contains(Privileges.VIEW)){
             throw new InsufficientPrivilegesException();
         }
 
-        // Provera da li postoji fajl:
-        if(!new File(destinationPath).exists())
-            throw new FileNotFoundException();
+        // Provera privilegija na nivou foldera:
+        if (!hasFolderPrivilege(destinationPath, Privileges.VIEW))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
 
-        List<File> fileList = getFileList(currentStorage.getRootDirectory() + "/" + path);
+        // Provera da li putanja postoji:
+        if(!pathExists(destinationPath) || currentStorage.isInternalPath(destinationPath))
+            throw new FileNotFoundException();
 
-        if (operation == Operations.FILTER_EXTENSION) {
-            String extension = argument;
+        return destinationPath;
+    }
 
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        if (file.getName().endsWith(extension))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    } else {
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        //toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "DIR");
-                        toReturn = listRecursive(fullPath, extension, Operations.FILTER_EXTENSION, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        if (file.getName().endsWith(extension))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    } else {
-                        //toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "DIR");
-                    }
-                }
-            }
-        } else if (operation == Operations.FILTER_FILENAME) {
-            String filename = argument;
-
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        if (file.getName().contains(filename))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    } else {
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        toReturn = listRecursive(fullPath, filename, Operations.FILTER_FILENAME, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        if (file.getName().contains(filename))
-                            toReturn.add(file.getName() + " --- " + file.getPath() + " --- " + file.length() / 1024 + " KB" + " --- " + "FILE");
-                    }
-                }
+    // Lenji stream putanja: bez podfoldera direktno DirectoryStream, sa podfolderima DirectoryTreeIterator
+    // (takodje DirectoryStream, ali ne ulazi u .blobs i .trash i ne prekida se kad folder nestane tokom obilaska).
+    // Kao i kod list(), folderi iz podfoldera se ne ispisuju.
+    private Stream<Path> openListing(Path start, boolean searchSubdirectories) {
+        try {
+            if (!searchSubdirectories) {
+                DirectoryStream<Path> directoryStream = Files.newDirectoryStream(start);
+                return StreamSupport.stream(directoryStream.spliterator(), false)
+                        .onClose(() -> {
+                            try {
+                                directoryStream.close();
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        });
             }
-        } else if (operation == Operations.SORT_BY_NAME_ASC || operation == Operations.SORT_BY_NAME_DESC) {
+            List<Path> skipped = new ArrayList<>();
+            for (String internal : internalDirectories())
+                skipped.add(Paths.get(internal));
+            DirectoryTreeIterator tree = new DirectoryTreeIterator(start, skipped);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tree, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .filter(p -> p.getParent().equals(start) || !Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS))
+                    .onClose(tree::close);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new OperationFailedException();
+        }
+    }
 
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        toReturn.add(file.getPath());
-                    } else {
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        toReturn.add(file.getPath());
-                        toReturn = listRecursive(fullPath, null, operation, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        toReturn.add(file.getPath());
-                    } else {
+    // VIEW privilegija za foldere ispod pocetnog; resolver se uzima odmah, jer se lenji stream cita kasnije
+    // (moguce i iz niti za koju korisnik sesije nije vezan)
+    private Predicate<String> viewableFolders() {
+        User user = currentStorage.getCurrentUser();
+        if (user == null)
+            return path -> true;
+        FolderPrivilegeResolver resolver = currentStorage.getPrivilegeResolver(user);
+        return path -> resolver.isAllowed(path, Privileges.VIEW);
+    }
 
-                        toReturn.add(file.getPath());
-                    }
-                }
-            }
-        } else if (operation == Operations.SORT_BY_DATE_MODIFIED_ASC || operation == Operations.SORT_BY_DATE_MODIFIED_DESC) {
+    // Formatiranje jedne stavke listanja; null ako je fajl u medjuvremenu obrisan
+    private String formatListEntry(Path path) {
+        FileEntry entry = toFileEntry(path.toFile());
+        return entry == null ? null : entry.toListingString();
+    }
 
-            if(operation == Operations.SORT_BY_DATE_MODIFIED_ASC) {
-                fileList.sort(new FileModifiedDateComparator());
-            }
-            else {
-                fileList.sort(new FileModifiedDateComparator().reversed());
+    // Obilazak za query(); vraca false kada je pronadjeno dovoljno stavki pa obilazak treba prekinuti.
+    // Kao i kod listanja, sadrzaj foldera bez VIEW privilegije se ne vraca, ali se u folder ulazi.
+    private boolean queryDirectory(String directoryPath, int depth, StorageQuery query, Predicate<FileEntry> sink) {
+        boolean viewable = depth == 0 || hasFolderPrivilege(directoryPath, Privileges.VIEW);
+        for (File child : getFileList(directoryPath)) {
+            IndexedFile file = IndexedFile.read(child);
+            if (file == null)
+                continue;
+
+            if (file.isDirectory()) {
+                // Velicina foldera je zbir sadrzaja, pa se uslovi proveravaju nad napravljenom stavkom
+                FileEntry entry = toFileEntry(file);
+                if (entry == null)
+                    continue;
+                if (viewable && query.matches(entry.getName(), true, entry.getSize(), entry.getLastModified()) && !sink.test(entry))
+                    return false;
+                if (query.isDescended(entry.getName(), depth + 1) && !queryDirectory(entry.getPath(), depth + 1, query, sink))
+                    return false;
+            } else if (viewable && query.matches(file.getName(), false, file.length(), lastModified(file))) {
+                FileEntry entry = toFileEntry(file);
+                if (entry != null && !sink.test(entry))
+                    return false;
             }
+        }
+        return true;
+    }
 
-            if(searchSubdirectories) {
-                for (File file : fileList) {
-                    if(file.isFile()) {
-                        toReturn.add(file.getPath());
-                    } else {
-                        if(operation == Operations.SORT_BY_DATE_MODIFIED_DESC) {
-                            fileList = getFileList(file.getPath());
-                            fileList.sort(new FileModifiedDateComparator());
-                        }
-                        else {
-                            fileList = getFileList(file.getPath());
-                            fileList.sort(new FileModifiedDateComparator().reversed());
-                        }
-                        String fullPath = file.getPath();
-                        fullPath = fullPath.replace("\\", "/").replace(currentStorage.getRootDirectory(), "");
-                        toReturn.add(file.getPath());
-                        toReturn = listRecursive(fullPath, null, operation, true, toReturn);
-                    }
-                }
-            } else {
-                for (File file : fileList) {
-                    if(file.isFile()){
-                        toReturn.add(file.getPath());
-                    } else {
-                        if(operation == Operations.SORT_BY_DATE_MODIFIED_DESC) {
-                            fileList = getFileList(file.getPath());
-                            fileList.sort(new FileModifiedDateComparator());
-                        }
-                        else {
-                            fileList = getFileList(file.getPath());
-                            fileList.sort(new FileModifiedDateComparator().reversed());
-                        }
-                        toReturn.add(file.getPath());
-                    }
-                }
-            }
+    // Kandidati za query() iz indeksa imena ili ekstenzija (kraca lista ako se mogu koristiti oba),
+    // ili null ako upit moze da vrati i foldere ili nijedan indeks ne odgovara
+    private List<String> queryIndexes(String directoryPath, StorageQuery query) {
+        if (!query.isFilesOnly())
+            return null;
+
+        boolean recursive = query.getMaxDepth() > 1;
+        List<String> byExtension = null;
+        List<String> byName = null;
+        if (query.getExtension() != null && currentStorage.getExtensionIndex() != null && ExtensionIndex.supports(query.getExtension()))
+            byExtension = currentStorage.getExtensionIndex().search(directoryPath, query.getExtension(), recursive);
+        if (query.getNameContains() != null && currentStorage.getNameIndex() != null && query.getNameContains().length() >= NameIndex.GRAM)
+            byName = currentStorage.getNameIndex().search(directoryPath, query.getNameContains(), recursive);
+
+        if (byExtension == null)
+            return byName;
+        if (byName == null)
+            return byExtension;
+        return byName.size() < byExtension.size() ? byName : byExtension;
+    }
+
+    // Da li je fajl iz indeksa unutar granica upita - svaki folder na putu do njega mora biti otvoren pri obilasku
+    private boolean isWithinQuery(String topLevelPath, String path, StorageQuery query) {
+        String[] folders = path.substring(topLevelPath.length() + 1).split(Pattern.quote(File.separator));
+        for (int i = 0; i < folders.length - 1; i++) {
+            if (!query.isDescended(folders[i], i + 1))
+                return false;
         }
+        return true;
+    }
 
-        return toReturn;
+    // Putanje fajlova za filter iz indeksa, ili null ako nijedan indeks ne moze da odgovori pa se folder obilazi.
+    // FILTER_FILENAME ide preko trigram indeksa (argument od bar tri znaka),
+    // a FILTER_EXTENSION preko indeksa ekstenzija (argument sa tackom, npr. ".pdf").
+    private List<String> searchIndexes(String directoryPath, String argument, Operations operation, boolean searchSubdirectories) {
+        if (operation == Operations.FILTER_FILENAME && currentStorage.getNameIndex() != null
+                && argument != null && argument.length() >= NameIndex.GRAM)
+            return currentStorage.getNameIndex().search(directoryPath, argument, searchSubdirectories);
+        if (operation == Operations.FILTER_EXTENSION && currentStorage.getExtensionIndex() != null
+                && ExtensionIndex.supports(argument))
+            return currentStorage.getExtensionIndex().search(directoryPath, argument, searchSubdirectories);
+        return null;
+    }
+
+    // Paralelni obilazak se koristi samo kad nema indeksa - indeks vec odgovara iz memorije (null - sekvencijalni obilazak)
+    private List<File> walkParallel(String path) {
+        if (currentStorage.getDirectoryIndex() != null)
+            return null;
+        SharedPool<ParallelDirectoryWalker>.Lease walker = owner.directoryWalkers.acquire(null);
+        if (walker == null)
+            return null;
+        try (walker) {
+            return walker.get().walk(path, internalDirectories());
+        }
+    }
+
+    // Pool-ovi se prave na prvo koriscenje, jednom za vlasnika i sve njegove sesije
+    private DeleteResult runTreeDeleter(Path directory, Predicate<String> canDeleteIn) {
+        try (SharedPool<TreeDeleter>.Lease deleter = owner.treeDeleters.acquire(() -> new TreeDeleter(1))) {
+            return deleter.get().delete(directory, canDeleteIn, currentStorage.getBlobStore());
+        }
     }
 
     // Listanje fajlova u root direktorijumu:
     private List<File> getFileList(String path) {
+        DirectoryIndex index = currentStorage.getDirectoryIndex();
+        if (index != null) {
+            List<File> indexed = index.getFileList(path);
+            if (indexed != null)
+                return indexed;
+        }
+
         File directory = new File(path);
         File[] fileList = directory.listFiles();
+        if (fileList == null)
+            return new ArrayList<>();
         return Arrays.asList(fileList);
     }
 
+    // Upis svih promena konfiguracije i korisnika koje jos nisu na disku (write-behind rezim)
+    public void flush() {
+        for (StorageModel storageModel : storageModelList)
+            storageModel.flush();
+    }
+
+    // Upis preostalih promena i zatvaranje svih otvorenih skladista
+    public void close() {
+        for (StorageModel storageModel : storageModelList)
+            storageModel.close();
+        // Sesija ne gasi pool-ove - pripadaju vlasniku
+        if (owner != this)
+            return;
+        directoryWalkers.shutdown();
+        putCopiers.shutdown();
+        treeDeleters.shutdown();
+    }
+
+    // Podesavanja za upravo otvoreno skladiste (write-behind upis, zurnal, zauzece po folderima, indeks direktorijuma)
+    private void prepareStorage() {
+        currentStorage.setFlushDelayMillis(writeBehindDelayMillis);
+        currentStorage.setJournalEnabled(journalEnabled);
+        if (deduplicationEnabled)
+            currentStorage.setBlobStore(BlobStore.open(currentStorage.getRootDirectory()));
+        // Oporavak posle pada: ono sto je ostalo u .trash folderu se brise i kad brzo brisanje nije ukljuceno
+        if (fastDeleteEnabled || TrashReclaimer.hasPendingTrash(currentStorage.getRootDirectory()))
+            currentStorage.startTrashReclaimer(trashReclaimRate);
+        if (usageAccountingEnabled)
+            currentStorage.startUsageAccounting(usageReconcileIntervalSeconds);
+        if (directoryIndexEnabled)
+            currentStorage.setDirectoryIndex(DirectoryIndex.build(currentStorage.getRootDirectory()));
+        if (nameIndexEnabled)
+            currentStorage.setNameIndex(NameIndex.open(currentStorage.getRootDirectory()));
+        if (extensionIndexEnabled)
+            currentStorage.setExtensionIndex(ExtensionIndex.build(currentStorage.getRootDirectory()));
+    }
+
+    // Azuriranje zauzeca po folderima (ako se vodi):
+    private void accountFileAdded(String path, long size) {
+        if (currentStorage.getUsageAccounting() != null)
+            currentStorage.getUsageAccounting().fileAdded(path, size);
+    }
+
+    private void accountFileRemoved(String path, long size) {
+        if (currentStorage.getUsageAccounting() != null)
+            currentStorage.getUsageAccounting().fileRemoved(path, size);
+    }
+
+    private void accountDirectoryAdded(String path) {
+        if (currentStorage.getUsageAccounting() != null)
+            currentStorage.getUsageAccounting().directoryAdded(path);
+    }
+
+    // Bajtovi foldera iz evidencije zauzeca (0 ako se zauzece po folderima ne vodi)
+    private long usedBytes(String path) {
+        DirectoryUsage usage = currentStorage.getUsageAccounting() == null ? null : currentStorage.getUsageAccounting().getUsage(path);
+        return usage == null ? 0 : usage.getBytes();
+    }
+
+    private void accountDirectoryRemoved(String path) {
+        if (currentStorage.getUsageAccounting() != null)
+            currentStorage.getUsageAccounting().directoryRemoved(path);
+    }
+
+    // Provera privilegije na nivou foldera (sa nasledjivanjem od najblizeg pretka koji ima unos).
+    // Ako korisnik nije ulogovan vraca true, pa proveru preuzima provera trenutnog korisnika.
+    private boolean hasFolderPrivilege(String path, Privileges privilege) {
+        User user = currentStorage.getCurrentUser();
+        if (user == null)
+            return true;
+        return currentStorage.getPrivilegeResolver(user).isAllowed(path, privilege);
+    }
+
+    // Azuriranje brojaca stavki u folderima sa ogranicenjem broja fajlova:
+    private void countEntryAdded(String path) {
+        currentStorage.getDirectoryEntryCounter().entryAdded(path);
+    }
+
+    private void countEntryRemoved(String path) {
+        currentStorage.getDirectoryEntryCounter().entryRemoved(path);
+    }
+
+    // Azuriranje indeksa posle izmene na disku:
+    private void refreshIndex(String path) {
+        if (currentStorage.getDirectoryIndex() != null)
+            currentStorage.getDirectoryIndex().refresh(path);
+        if (currentStorage.getNameIndex() != null)
+            currentStorage.getNameIndex().refresh(path);
+        if (currentStorage.getExtensionIndex() != null)
+            currentStorage.getExtensionIndex().refresh(path);
+    }
+
+    private boolean pathExists(String path) {
+        if (currentStorage.getDirectoryIndex() != null)
+            return currentStorage.getDirectoryIndex().contains(path);
+        return new File(path).exists();
+    }
+
+    // Broj i ukupna velicina fajlova sa ekstenzijom u folderu (i podfolderima) - iz indeksa ekstenzija, bez obilaska.
+    // Vraca null ako indeks ekstenzija nije ukljucen.
+    public ExtensionStats getExtensionStats(String path, String extension, boolean searchSubdirectories) throws InsufficientPrivilegesException, FileNotFoundException {
+        String destinationPath = checkListAccess(path);
+        if (currentStorage.getExtensionIndex() == null)
+            return null;
+        return currentStorage.getExtensionIndex().getStats(destinationPath, extension, searchSubdirectories);
+    }
+
+    // Indeks fajlova po ekstenziji za FILTER_EXTENSION i getExtensionStats
+    public boolean isExtensionIndexEnabled() {
+        return extensionIndexEnabled;
+    }
+
+    public void setExtensionIndexEnabled(boolean extensionIndexEnabled) {
+        this.extensionIndexEnabled = extensionIndexEnabled;
+    }
+
+    // Trigram indeks imena fajlova za FILTER_FILENAME
+    public boolean isNameIndexEnabled() {
+        return nameIndexEnabled;
+    }
+
+    public void setNameIndexEnabled(boolean nameIndexEnabled) {
+        this.nameIndexEnabled = nameIndexEnabled;
+    }
+
+    public boolean isDirectoryIndexEnabled() {
+        return directoryIndexEnabled;
+    }
+
+    // Ukljucivanje indeksa vazi za skladista koja se otvore posle poziva
+    public void setDirectoryIndexEnabled(boolean directoryIndexEnabled) {
+        this.directoryIndexEnabled = directoryIndexEnabled;
+    }
+
+    public long getWriteBehindDelayMillis() {
+        return writeBehindDelayMillis;
+    }
+
+    // Interval za write-behind upis config.json/users.json, 0 znaci sinhroni upis posle svake promene.
+    // Vazi za trenutno skladiste i za skladista koja se otvore posle poziva.
+    public void setWriteBehindDelayMillis(long writeBehindDelayMillis) {
+        this.writeBehindDelayMillis = writeBehindDelayMillis;
+        if (currentStorage != null)
+            currentStorage.setFlushDelayMillis(writeBehindDelayMillis);
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    // Zurnal operacija umesto prepisivanja config.json/users.json; vazi za trenutno i kasnije otvorena skladista
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+        if (currentStorage != null)
+            currentStorage.setJournalEnabled(journalEnabled);
+    }
+
+    // Zauzece foldera (bajtovi i broj fajlova sa podfolderima), null ako se zauzece ne vodi
+    public DirectoryUsage getDirectoryUsage(String path) {
+        if (currentStorage.getUsageAccounting() == null)
+            return null;
+        if (path.equalsIgnoreCase("root"))
+            return currentStorage.getUsageAccounting().getUsage(currentStorage.getRootDirectory());
+        return currentStorage.getUsageAccounting().getUsage(currentStorage.getRootDirectory() + "/" + path);
+    }
+
+    public boolean isUsageAccountingEnabled() {
+        return usageAccountingEnabled;
+    }
+
+    // Vodjenje zauzeca po folderima; vazi za skladista koja se otvore posle poziva
+    public void setUsageAccountingEnabled(boolean usageAccountingEnabled) {
+        this.usageAccountingEnabled = usageAccountingEnabled;
+    }
+
+    public long getUsageReconcileIntervalSeconds() {
+        return usageReconcileIntervalSeconds;
+    }
+
+    // Na koliko sekundi pozadinska nit ponovo skenira disk i ispravlja zauzece, 0 iskljucuje proveru
+    public void setUsageReconcileIntervalSeconds(long usageReconcileIntervalSeconds) {
+        this.usageReconcileIntervalSeconds = usageReconcileIntervalSeconds;
+    }
+
+    public int getListingParallelism() {
+        ParallelDirectoryWalker walker = owner.directoryWalkers.get();
+        return walker == null ? 1 : walker.getParallelism();
+    }
+
+    // Maksimalan broj niti za rekurzivno listanje, 1 znaci sekvencijalni obilazak.
+    // Listanja koja su vec u toku (i u drugim sesijama) zavrsavaju na starom pool-u.
+    public void setListingParallelism(int parallelism) {
+        owner.directoryWalkers.replace(parallelism > 1 ? new ParallelDirectoryWalker(parallelism) : null);
+    }
+
+    // Nacin prenosa fajlova za put/putParallel; ako izabrani nacin nije podrzan, automatski se prelazi na sledeci
+    public IngestMode getIngestMode() {
+        return ingestMode;
+    }
+
+    public void setIngestMode(IngestMode ingestMode) {
+        this.ingestMode = ingestMode;
+    }
+
+    // Deduplikacija sadrzaja za skladista koja se otvore posle ukljucivanja (vazi umesto ingestMode-a)
+    public boolean isDeduplicationEnabled() {
+        return deduplicationEnabled;
+    }
+
+    public void setDeduplicationEnabled(boolean deduplicationEnabled) {
+        this.deduplicationEnabled = deduplicationEnabled;
+    }
+
+    // Brzo brisanje preko .trash foldera; trashReclaimRate je najveci broj fajlova koje pozadinska nit brise u sekundi (0 - bez ogranicenja)
+    public boolean isFastDeleteEnabled() {
+        return fastDeleteEnabled;
+    }
+
+    public void setFastDeleteEnabled(boolean fastDeleteEnabled) {
+        this.fastDeleteEnabled = fastDeleteEnabled;
+    }
+
+    public long getTrashReclaimRate() {
+        return trashReclaimRate;
+    }
+
+    public void setTrashReclaimRate(long trashReclaimRate) {
+        this.trashReclaimRate = trashReclaimRate;
+    }
+
+    // Broj niti za brisanje stabla foldera (1 - sekvencijalno; vise - podfolderi prvog nivoa se brisu paralelno)
+    public int getDeleteParallelism() {
+        TreeDeleter deleter = owner.treeDeleters.get();
+        return deleter == null ? 1 : deleter.getParallelism();
+    }
+
+    public void setDeleteParallelism(int parallelism) {
+        owner.treeDeleters.replace(new TreeDeleter(Math.max(1, parallelism)));
+    }
+
+    // Broj niti za putParallel (podrazumevano broj procesora)
+    public int getPutParallelism() {
+        ParallelFileCopier copier = owner.putCopiers.get();
+        return copier == null ? Runtime.getRuntime().availableProcessors() : copier.getParallelism();
+    }
+
+    public void setPutParallelism(int parallelism) {
+        owner.putCopiers.replace(new ParallelFileCopier(Math.max(1, parallelism)));
+    }
+
     public void setCurrentStorage(StorageModel currentStorage) {
         this.currentStorage = currentStorage;
     }
@@ -1,12 +1,36 @@
 package rs.edu.raf.storage;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import rs.edu.raf.storage.admission.AdmissionPolicy;
+import rs.edu.raf.storage.concurrency.StripedPathLock;
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+import rs.edu.raf.storage.accounting.DirectoryEntryCounter;
+import rs.edu.raf.storage.accounting.UsageAccounting;
+import rs.edu.raf.storage.accounting.UsageReconciler;
 import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.index.DirectoryIndex;
+import rs.edu.raf.storage.index.ExtensionIndex;
+import rs.edu.raf.storage.index.NameIndex;
+import rs.edu.raf.storage.persistence.AtomicJsonWriter;
+import rs.edu.raf.storage.persistence.JournalRecord;
+import rs.edu.raf.storage.persistence.OperationJournal;
+import rs.edu.raf.storage.security.FolderPrivilegeResolver;
+import rs.edu.raf.storage.session.StorageSession;
 import rs.edu.raf.storage.user_management.User;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class StorageModel {
 
@@ -21,10 +45,64 @@ public class StorageModel {
     private boolean storageSizeLimitSet = false;
     private boolean maxNumberOfFilesInDirectorySet = false;
     private long currentStorageSize;
-    private List<User> userList = new ArrayList<>();
-    private List<String> unsupportedExtensions = new ArrayList<>();
-    private Map<String, Integer> maxNumberOfFilesInDirectory = new HashMap<>();
+    private long journalSequence = 0;
+    // Deljeno stanje skladista koriste sesije iz vise niti istovremeno
+    private List<User> userList = new CopyOnWriteArrayList<>();
+    private List<String> unsupportedExtensions = new CopyOnWriteArrayList<>();
+    private Map<String, Integer> maxNumberOfFilesInDirectory = new ConcurrentHashMap<>();
     private ObjectMapper mapper = new ObjectMapper();
+    @JsonIgnore
+    private DirectoryIndex directoryIndex;
+    @JsonIgnore
+    private NameIndex nameIndex;
+    @JsonIgnore
+    private ExtensionIndex extensionIndex;
+    // Write-behind upis: ako je flushDelayMillis > 0, updateConfig()/updateUsers() samo oznacavaju promenu,
+    // a fajlovi se upisuju jednom posle isteka intervala (ili na flush()/close())
+    @JsonIgnore
+    private long flushDelayMillis = 0;
+    @JsonIgnore
+    private boolean configDirty = false;
+    @JsonIgnore
+    private boolean usersDirty = false;
+    @JsonIgnore
+    private boolean flushScheduled = false;
+    @JsonIgnore
+    private ScheduledExecutorService flushExecutor;
+    // Zurnal operacija: ako je ukljucen, promene se dopisuju u journal.log umesto da se prepisuju config.json i users.json
+    @JsonIgnore
+    private OperationJournal journal;
+    @JsonIgnore
+    private int journalCompactionThreshold = 1000;
+    @JsonIgnore
+    private UsageAccounting usageAccounting;
+    @JsonIgnore
+    private UsageReconciler usageReconciler;
+    @JsonIgnore
+    private DirectoryEntryCounter directoryEntryCounter = new DirectoryEntryCounter();
+    @JsonIgnore
+    private Map<String, FolderPrivilegeResolver> privilegeResolvers = new ConcurrentHashMap<>();
+    @JsonIgnore
+    private AdmissionPolicy admissionPolicy;
+    // Deduplikacija sadrzaja: ako je blobStore postavljen, currentStorageSize racuna fizicke bajtove
+    @JsonIgnore
+    private BlobStore blobStore;
+    // Korisnik sesije cija se operacija trenutno izvrsava na ovoj niti (ima prednost nad currentUser)
+    @JsonIgnore
+    private final ThreadLocal<User> sessionUser = new ThreadLocal<>();
+    @JsonIgnore
+    private final Map<String, StorageSession> sessions = new ConcurrentHashMap<>();
+    // Bajtovi prihvacenih upisa koji jos nisu zavrseni; racunaju se kao zauzeti pri proveri kvote
+    @JsonIgnore
+    private long reservedStorageSize = 0;
+    @JsonIgnore
+    private final StripedPathLock pathLocks = new StripedPathLock(64);
+    @JsonIgnore
+    private TrashReclaimer trashReclaimer;
+    // Folder za privremene fajlove pri upisu, u .trash folderu (isti fajl sistem, ne vidi se u listanju).
+    // Ime je jedinstveno za svako pokretanje, pa ostatke posle pada brise TrashReclaimer.
+    @JsonIgnore
+    private final String stagingName = TrashReclaimer.STAGING_PREFIX + UUID.randomUUID();
 
     public StorageModel(){
 
@@ -78,10 +156,12 @@ public class StorageModel {
 
     public void setStorageSizeLimit(long storageSizeLimit) {
         this.storageSizeLimit = storageSizeLimit;
+        invalidateAdmissionPolicy();
     }
 
     public void setUnsupportedExtensions(List<String> unsupportedExtensions) {
-        this.unsupportedExtensions = unsupportedExtensions;
+        this.unsupportedExtensions = new CopyOnWriteArrayList<>(unsupportedExtensions);
+        invalidateAdmissionPolicy();
     }
 
     public Map<String, Integer> getMaxNumberOfFilesInDirectory() {
@@ -89,7 +169,8 @@ public class StorageModel {
     }
 
     public void setMaxNumberOfFilesInDirectory(Map<String, Integer> maxNumberOfFilesInDirectory) {
-        this.maxNumberOfFilesInDirectory = maxNumberOfFilesInDirectory;
+        this.maxNumberOfFilesInDirectory = new ConcurrentHashMap<>(maxNumberOfFilesInDirectory);
+        invalidateAdmissionPolicy();
     }
 
     public List<User> getUserList() {
@@ -97,7 +178,8 @@ public class StorageModel {
     }
 
     public void setUserList(List<User> userList) {
-        this.userList = userList;
+        this.userList = new CopyOnWriteArrayList<>(userList);
+        invalidatePrivilegeResolvers();
     }
 
     public String getDownloadFolder() {
@@ -113,7 +195,8 @@ public class StorageModel {
     }
 
     public User getCurrentUser() {
-        return currentUser;
+        User user = sessionUser.get();
+        return user != null ? user : currentUser;
     }
 
     public void setCurrentUser(User currentUser) {
@@ -136,22 +219,206 @@ public class StorageModel {
         this.superuser = superuser;
     }
 
-    public void updateConfig(){
+    public synchronized void updateConfig(){
+        configDirty = true;
+        if (flushDelayMillis > 0)
+            scheduleFlush();
+        else
+            flush();
+    }
+
+    public synchronized void updateUsers(){
+        usersDirty = true;
+        if (flushDelayMillis > 0)
+            scheduleFlush();
+        else
+            flush();
+    }
+
+    // Upisivanje svih promena koje jos nisu na disku; vraca false ako upis nije uspeo (promene ostaju oznacene za sledeci pokusaj)
+    public synchronized boolean flush(){
         try {
-            mapper.writeValue(new File(configJSON), this);
+            if (configDirty) {
+                AtomicJsonWriter.write(mapper, configJSON, this);
+                configDirty = false;
+            }
+            if (usersDirty) {
+                AtomicJsonWriter.write(mapper, usersJSON, userList);
+                usersDirty = false;
+            }
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
     }
 
-    public void updateUsers(){
+    // Belezenje promene stanja: sa zurnalom se dopisuje jedan zapis, bez zurnala se prepisuje ceo config (i users za promene korisnika)
+    public synchronized void journal(JournalRecord record){
+        if (journal == null) {
+            if (record.changesUsers())
+                updateUsers();
+            updateConfig();
+            return;
+        }
+
         try {
-            mapper.writeValue(new File(usersJSON), userList);
+            record.setSequence(++journalSequence);
+            journal.append(record);
+            if (journal.getRecordCount() >= journalCompactionThreshold)
+                compactJournal();
         } catch (IOException e) {
             e.printStackTrace();
+            // Ako zurnal ne moze da se upise, stanje se cuva punim upisom
+            compactJournal();
+        }
+    }
+
+    // Kompakcija: upis snapshot-a (config.json + users.json) pa brisanje zurnala.
+    // Zurnal se brise samo ako je snapshot sigurno upisan, inace bi promene iz zurnala bile izgubljene.
+    public synchronized void compactJournal(){
+        configDirty = true;
+        usersDirty = true;
+        if (!flush())
+            return;
+        try {
+            if (journal != null)
+                journal.truncate();
+            else
+                new OperationJournal(rootDirectory).truncate();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Pokretanje vodjenja zauzeca po folderima: skeniranje skladista, ispravka currentStorageSize
+    // i (ako je intervalSeconds > 0) pozadinska provera odstupanja
+    public void startUsageAccounting(long intervalSeconds){
+        UsageAccounting accounting = UsageAccounting.build(rootDirectory);
+        synchronized (this) {
+            usageAccounting = accounting;
+            correctStorageSize(physicalBytes(accounting.getTotalBytes()));
+            if (intervalSeconds > 0) {
+                usageReconciler = new UsageReconciler(this, intervalSeconds);
+                usageReconciler.start();
+            }
+        }
+    }
+
+    // Pokretanje niti koja brise sadrzaj .trash foldera (ukljucujuci ono sto je ostalo od prethodnog pokretanja)
+    public synchronized void startTrashReclaimer(long filesPerSecond){
+        if (trashReclaimer != null)
+            return;
+        trashReclaimer = new TrashReclaimer(this, filesPerSecond);
+        trashReclaimer.start();
+    }
+
+    // .blobs i .trash folderi pripadaju skladistu - korisnicke operacije ih ne vide i ne mogu da ih menjaju
+    public boolean isInternalPath(String path) {
+        String normalized = Paths.get(path).normalize().toString();
+        return BlobStore.isBlobPath(rootDirectory, normalized) || TrashReclaimer.isTrashPath(rootDirectory, normalized);
+    }
+
+    @JsonIgnore
+    public Path getStagingDirectory() throws IOException {
+        return Files.createDirectories(Paths.get(rootDirectory, TrashReclaimer.TRASH_FOLDER, stagingName));
+    }
+
+    @JsonIgnore
+    public String getStagingName() {
+        return stagingName;
+    }
+
+    @JsonIgnore
+    public synchronized TrashReclaimer getTrashReclaimer() {
+        return trashReclaimer;
+    }
+
+    // Ponovno skeniranje diska i ispravka zauzeca - skeniranje ide van lock-a modela
+    public void reconcileUsage(){
+        UsageAccounting accounting = usageAccounting;
+        if (accounting == null)
+            return;
+
+        accounting.reconcile();
+        synchronized (this) {
+            correctStorageSize(physicalBytes(accounting.getTotalBytes()));
         }
     }
 
+    // Zauzece po folderima racuna svaki fajl posebno; fajlovi sa istim sadrzajem fizicki zauzimaju prostor samo jednom
+    // Fajlovi u .trash folderu zauzimaju prostor dok ih pozadinska nit ne obrise
+    private long physicalBytes(long logicalBytes){
+        long bytes = blobStore == null ? logicalBytes : logicalBytes - blobStore.getSharedBytes();
+        return trashReclaimer == null ? bytes : bytes + trashReclaimer.getPendingBytes();
+    }
+
+    private void correctStorageSize(long actualSize){
+        long drift = actualSize - currentStorageSize;
+        if (drift != 0) {
+            currentStorageSize = actualSize;
+            journal(JournalRecord.storageSizeChange(drift));
+        }
+    }
+
+    // Upis preostalih promena i gasenje pozadinskih niti (write-behind, provera zauzeca)
+    public synchronized void close(){
+        if (usageReconciler != null) {
+            usageReconciler.stop();
+            usageReconciler = null;
+        }
+        if (trashReclaimer != null) {
+            trashReclaimer.stop();
+            trashReclaimer = null;
+        }
+        if (nameIndex != null) {
+            nameIndex.save();
+            nameIndex = null;
+        }
+        if (journal != null) {
+            compactJournal();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journal = null;
+        }
+        flush();
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            flushExecutor = null;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(rootDirectory, TrashReclaimer.TRASH_FOLDER, stagingName));
+        } catch (IOException e) {
+            // u folderu su ostali fajlovi - brisu se pri sledecem pokretanju
+        }
+    }
+
+    // Vise poziva updateConfig()/updateUsers() u okviru jednog intervala daje samo jedan upis
+    private void scheduleFlush(){
+        if (flushScheduled)
+            return;
+
+        if (flushExecutor == null) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "storage-flush-" + rootDirectory);
+                thread.setDaemon(true);
+                return thread;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+        }
+
+        flushScheduled = true;
+        flushExecutor.schedule(() -> {
+            synchronized (this) {
+                flushScheduled = false;
+                flush();
+            }
+        }, flushDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
 
     public boolean isMaxNumberOfFilesInDirectorySet() {
         return maxNumberOfFilesInDirectorySet;
@@ -195,20 +462,206 @@ public class StorageModel {
         this.configJSON = configJSON;
     }
 
-    public long getCurrentStorageSize() {
+    public synchronized long getCurrentStorageSize() {
         return currentStorageSize;
     }
 
-    public void setCurrentStorageSize(long currentStorageSize) {
+    public synchronized void setCurrentStorageSize(long currentStorageSize) {
         this.currentStorageSize = currentStorageSize;
     }
 
+    // Promena zauzeca i upis u zurnal kao jedna operacija, da se promene iz vise sesija ne izgube
+    public synchronized void changeStorageSize(long delta) {
+        changeStorageSize(delta, 0);
+    }
+
+    // Promena zauzeca uz oslobadjanje rezervacije - u istom koraku, da se upisani bajtovi ne racunaju dvaput
+    public synchronized void changeStorageSize(long delta, long releasedReservation) {
+        releaseStorage(releasedReservation);
+        if (delta == 0)
+            return;
+        currentStorageSize += delta;
+        journal(JournalRecord.storageSizeChange(delta));
+    }
+
+    // Rezervacija bajtova kvote; false ako bi zauzece sa vec rezervisanim preslo ogranicenje
+    public synchronized boolean reserveStorage(long bytes) {
+        if (storageSizeLimitSet && currentStorageSize + reservedStorageSize + bytes > storageSizeLimit)
+            return false;
+        reservedStorageSize += bytes;
+        return true;
+    }
+
+    public synchronized void releaseStorage(long bytes) {
+        reservedStorageSize = Math.max(0, reservedStorageSize - bytes);
+    }
+
+    @JsonIgnore
+    public StripedPathLock getPathLocks() {
+        return pathLocks;
+    }
+
+    // Korisnik sesije vezan za trenutnu nit (null ako operacija ne ide kroz sesiju)
+    @JsonIgnore
+    public User getSessionUser() {
+        return sessionUser.get();
+    }
+
+    // Vezivanje korisnika sesije za trenutnu nit; vraca prethodno vezanog korisnika
+    public User bindSessionUser(User user) {
+        User previous = sessionUser.get();
+        if (user == null)
+            sessionUser.remove();
+        else
+            sessionUser.set(user);
+        return previous;
+    }
+
+    @JsonIgnore
+    public Map<String, StorageSession> getSessions() {
+        return sessions;
+    }
+
+    @JsonIgnore
+    public DirectoryIndex getDirectoryIndex() {
+        return directoryIndex;
+    }
+
+    @JsonIgnore
+    public void setDirectoryIndex(DirectoryIndex directoryIndex) {
+        this.directoryIndex = directoryIndex;
+    }
+
+    @JsonIgnore
+    public NameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    @JsonIgnore
+    public void setNameIndex(NameIndex nameIndex) {
+        this.nameIndex = nameIndex;
+    }
+
+    @JsonIgnore
+    public ExtensionIndex getExtensionIndex() {
+        return extensionIndex;
+    }
+
+    @JsonIgnore
+    public void setExtensionIndex(ExtensionIndex extensionIndex) {
+        this.extensionIndex = extensionIndex;
+    }
+
+    @JsonIgnore
+    public long getFlushDelayMillis() {
+        return flushDelayMillis;
+    }
+
+    @JsonIgnore
+    public synchronized void setFlushDelayMillis(long flushDelayMillis) {
+        this.flushDelayMillis = flushDelayMillis;
+        if (flushDelayMillis <= 0)
+            flush();
+    }
+
+    // Prevedene privilegije korisnika po folderima; pravi se jednom i koristi dok se privilegije ili korisnici ne promene
+    public synchronized FolderPrivilegeResolver getPrivilegeResolver(User user) {
+        return privilegeResolvers.computeIfAbsent(user.getUsername().toLowerCase(), u -> FolderPrivilegeResolver.compile(user.getFolderPrivileges()));
+    }
+
+    // Mapa privilegija korisnika se ne menja u mestu nego se zamenjuje izmenjenom kopijom,
+    // pa je prevodjenje privilegija i upis konfiguracije mogu citati dok se privilegije menjaju
+    public synchronized void setFolderPrivileges(User user, String path, Set<Privileges> privileges) {
+        Map<String, Set<Privileges>> folderPrivileges = user.getFolderPrivileges() == null ? new HashMap<>() : new HashMap<>(user.getFolderPrivileges());
+        folderPrivileges.put(path, privileges);
+        user.setFolderPrivileges(folderPrivileges);
+        invalidatePrivilegeResolvers();
+    }
+
+    public synchronized void invalidatePrivilegeResolvers() {
+        privilegeResolvers.clear();
+    }
+
+    // Pravila za dodavanje fajlova, prevedena iz trenutne konfiguracije; prave se ponovo posle svake promene ogranicenja
+    @JsonIgnore
+    public synchronized AdmissionPolicy getAdmissionPolicy() {
+        if (admissionPolicy == null)
+            admissionPolicy = AdmissionPolicy.compile(this);
+        return admissionPolicy;
+    }
+
+    public synchronized void invalidateAdmissionPolicy() {
+        admissionPolicy = null;
+    }
+
+    @JsonIgnore
+    public DirectoryEntryCounter getDirectoryEntryCounter() {
+        return directoryEntryCounter;
+    }
+
+    @JsonIgnore
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    @JsonIgnore
+    public void setBlobStore(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    @JsonIgnore
+    public UsageAccounting getUsageAccounting() {
+        return usageAccounting;
+    }
+
+    @JsonIgnore
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+
+    // Ukljucivanje/iskljucivanje zurnala; zapisi koji su ostali od ranije (vec ponovljeni pri otvaranju) se kompaktuju
+    @JsonIgnore
+    public synchronized void setJournalEnabled(boolean journalEnabled) {
+        if (OperationJournal.exists(rootDirectory))
+            compactJournal();
+
+        if (journalEnabled && journal == null) {
+            journal = new OperationJournal(rootDirectory);
+        } else if (!journalEnabled && journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journal = null;
+        }
+    }
+
+    @JsonIgnore
+    public int getJournalCompactionThreshold() {
+        return journalCompactionThreshold;
+    }
+
+    @JsonIgnore
+    public void setJournalCompactionThreshold(int journalCompactionThreshold) {
+        this.journalCompactionThreshold = journalCompactionThreshold;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
     public boolean isStorageSizeLimitSet() {
         return storageSizeLimitSet;
     }
 
     public void setStorageSizeLimitSet(boolean storageSizeLimitSet) {
         this.storageSizeLimitSet = storageSizeLimitSet;
+        invalidateAdmissionPolicy();
     }
 
 }
@@ -0,0 +1,116 @@
+package rs.edu.raf.storage.accounting;
+
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// Broj stavki (fajlova i foldera) u folderima sa ogranicenjem broja fajlova.
+// Brojac se pravi pri prvoj proveri, a operacije skladista ga posle samo uvecavaju/umanjuju.
+// Uz brojac se pamti vreme izmene foldera - ako se folder promeni mimo skladista, sledeca provera ponovo prebroji stavke.
+// Stavke koje su prihvacene a jos nisu upisane se vode kao rezervisane i racunaju se u proveri ogranicenja.
+public class DirectoryEntryCounter {
+
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final Map<String, Integer> reserved = new HashMap<>();
+
+    public synchronized int getCount(String directoryPath) {
+        Path directory = new File(directoryPath).toPath();
+        String key = directory.toString();
+        FileTime modified = lastModified(directory);
+
+        Counter counter = counters.get(key);
+        if (counter == null || modified == null || !modified.equals(counter.lastModified)) {
+            counter = new Counter(countEntries(directory), modified);
+            counters.put(key, counter);
+        }
+        return counter.count;
+    }
+
+    // Rezervacija mesta za entries novih stavki, samo ako ne prelazi limit (zajedno sa vec rezervisanim)
+    public synchronized boolean tryReserve(String directoryPath, int entries, int limit) {
+        String key = new File(directoryPath).toPath().toString();
+        int pending = reserved.getOrDefault(key, 0);
+        if (getCount(directoryPath) + pending + entries > limit)
+            return false;
+        reserved.put(key, pending + entries);
+        return true;
+    }
+
+    public synchronized void release(String directoryPath, int entries) {
+        String key = new File(directoryPath).toPath().toString();
+        int pending = reserved.getOrDefault(key, 0) - entries;
+        if (pending > 0)
+            reserved.put(key, pending);
+        else
+            reserved.remove(key);
+    }
+
+    // Upisana stavka za koju je ranije rezervisano mesto
+    public synchronized void entryAddedFromReservation(String path) {
+        update(new File(path).getParent(), 1);
+        String parent = new File(path).getParent();
+        if (parent != null)
+            release(parent, 1);
+    }
+
+    public synchronized void entryAdded(String path) {
+        update(new File(path).getParent(), 1);
+    }
+
+    public synchronized void entryRemoved(String path) {
+        update(new File(path).getParent(), -1);
+    }
+
+    private void update(String directoryPath, int delta) {
+        if (directoryPath == null)
+            return;
+
+        Counter counter = counters.get(directoryPath);
+        if (counter == null)
+            return;
+
+        counter.count += delta;
+        counter.lastModified = lastModified(new File(directoryPath).toPath());
+    }
+
+    private static int countEntries(Path directory) {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                // Interni folderi skladista (.blobs, .trash) nisu stavke korena
+                String name = entry.getFileName().toString();
+                if (!name.equals(BlobStore.BLOB_FOLDER) && !name.equals(TrashReclaimer.TRASH_FOLDER))
+                    count++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return count;
+    }
+
+    private static FileTime lastModified(Path directory) {
+        try {
+            return Files.getLastModifiedTime(directory);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class Counter {
+        private int count;
+        private FileTime lastModified;
+
+        Counter(int count, FileTime lastModified) {
+            this.count = count;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package rs.edu.raf.storage.accounting;
+
+// Zauzece jednog foldera, ukljucujuci sve podfoldere
+public class DirectoryUsage {
+
+    private long bytes;
+    private long fileCount;
+
+    public DirectoryUsage() {
+
+    }
+
+    public DirectoryUsage(long bytes, long fileCount) {
+        this.bytes = bytes;
+        this.fileCount = fileCount;
+    }
+
+    void add(long bytes, long fileCount) {
+        this.bytes += bytes;
+        this.fileCount += fileCount;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryUsage{" +
+                "bytes=" + bytes +
+                ", fileCount=" + fileCount +
+                '}';
+    }
+}
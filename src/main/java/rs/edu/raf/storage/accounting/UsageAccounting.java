@@ -0,0 +1,213 @@
+package rs.edu.raf.storage.accounting;
+
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+// Zauzece po folderima (bajtovi i broj fajlova), sabrano navise do root-a skladista.
+// Azurira se inkrementalno posle svake operacije, a reconcile() ponovo skenira disk i ispravlja odstupanja.
+// Fajlovi koje skladiste koristi za sebe (config.json, users.json, zurnal, .blobs i .trash folderi) se ne racunaju.
+public class UsageAccounting {
+
+    private static final Set<String> STORAGE_FILES = Set.of("config.json", "users.json", "journal.log", "config.json.tmp", "users.json.tmp", "names.idx", "names.idx.tmp");
+
+    private final String rootDirectory;
+    private final Object reconcileLock = new Object();
+    private Map<String, DirectoryUsage> usages = new HashMap<>();
+    // Folderi (i podstabla) promenjeni dok reconcile() skenira disk; null kada skeniranje nije u toku
+    private Set<String> changedDirectories;
+    private Set<String> changedSubtrees;
+
+    private UsageAccounting(String rootDirectory) {
+        this.rootDirectory = new File(rootDirectory).getPath();
+    }
+
+    public static UsageAccounting build(String rootDirectory) {
+        UsageAccounting accounting = new UsageAccounting(rootDirectory);
+        accounting.usages = accounting.scan();
+        return accounting;
+    }
+
+    public synchronized DirectoryUsage getUsage(String directoryPath) {
+        DirectoryUsage usage = usages.get(new File(directoryPath).getPath());
+        return usage == null ? null : new DirectoryUsage(usage.getBytes(), usage.getFileCount());
+    }
+
+    public synchronized long getTotalBytes() {
+        return usages.get(rootDirectory).getBytes();
+    }
+
+    public synchronized void fileAdded(String path, long size) {
+        if (isStorageFile(path))
+            return;
+        addToAncestors(new File(path).getParent(), size, 1);
+        markChanged(changedDirectories, new File(path).getParent());
+    }
+
+    public synchronized void fileRemoved(String path, long size) {
+        if (isStorageFile(path))
+            return;
+        addToAncestors(new File(path).getParent(), -size, -1);
+        markChanged(changedDirectories, new File(path).getParent());
+    }
+
+    // Novi folder (prazan ili premesten zajedno sa sadrzajem) - skenira se samo njegovo podstablo
+    public synchronized void directoryAdded(String path) {
+        String key = new File(path).getPath();
+        if (!key.startsWith(rootDirectory + File.separator) || usages.containsKey(key))
+            return;
+
+        Map<String, DirectoryUsage> subtree = scan(key);
+        usages.putAll(subtree);
+        DirectoryUsage usage = subtree.get(key);
+        if (usage != null)
+            addToAncestors(new File(key).getParent(), usage.getBytes(), usage.getFileCount());
+        markChanged(changedSubtrees, key);
+    }
+
+    public synchronized void directoryRemoved(String path) {
+        String key = new File(path).getPath();
+        DirectoryUsage usage = usages.get(key);
+        if (usage == null)
+            return;
+
+        addToAncestors(new File(key).getParent(), -usage.getBytes(), -usage.getFileCount());
+        usages.keySet().removeIf(k -> isInSubtree(k, key));
+        markChanged(changedSubtrees, key);
+    }
+
+    // Ponovno skeniranje diska; vraca razliku u bajtovima (novo - vodjeno) za ceo root.
+    // Skeniranje ide van lock-a, pa se za foldere promenjene u toku skeniranja zadrzava vodjeno stanje
+    // (ono vec sadrzi te promene), a skenirano se koristi za sve ostale.
+    public long reconcile() {
+        synchronized (reconcileLock) {
+            synchronized (this) {
+                changedDirectories = new HashSet<>();
+                changedSubtrees = new HashSet<>();
+            }
+            Map<String, DirectoryUsage> scanned = scan();
+            synchronized (this) {
+                Map<String, DirectoryUsage> direct = directUsages(scanned);
+                Map<String, DirectoryUsage> liveDirect = directUsages(usages);
+                for (String subtree : changedSubtrees) {
+                    direct.keySet().removeIf(k -> isInSubtree(k, subtree));
+                    liveDirect.forEach((k, usage) -> {
+                        if (isInSubtree(k, subtree))
+                            direct.put(k, usage);
+                    });
+                }
+                for (String directory : changedDirectories) {
+                    DirectoryUsage usage = liveDirect.get(directory);
+                    if (usage != null)
+                        direct.put(directory, usage);
+                }
+                changedDirectories = null;
+                changedSubtrees = null;
+
+                long total = getTotalBytes();
+                usages = rollUp(direct);
+                return getTotalBytes() - total;
+            }
+        }
+    }
+
+    private static void markChanged(Set<String> changed, String directoryPath) {
+        if (changed != null)
+            changed.add(directoryPath);
+    }
+
+    private static boolean isInSubtree(String path, String directoryPath) {
+        return path.equals(directoryPath) || path.startsWith(directoryPath + File.separator);
+    }
+
+    // Zauzece samo fajlova direktno u folderu: zbir foldera umanjen za zbirove njegovih podfoldera
+    private Map<String, DirectoryUsage> directUsages(Map<String, DirectoryUsage> rolledUp) {
+        Map<String, DirectoryUsage> direct = new HashMap<>();
+        rolledUp.forEach((key, usage) -> direct.put(key, new DirectoryUsage(usage.getBytes(), usage.getFileCount())));
+        rolledUp.forEach((key, usage) -> {
+            DirectoryUsage parent = key.equals(rootDirectory) ? null : direct.get(new File(key).getParent());
+            if (parent != null)
+                parent.add(-usage.getBytes(), -usage.getFileCount());
+        });
+        return direct;
+    }
+
+    private Map<String, DirectoryUsage> rollUp(Map<String, DirectoryUsage> direct) {
+        Map<String, DirectoryUsage> rolledUp = new HashMap<>();
+        rolledUp.put(rootDirectory, new DirectoryUsage());
+        direct.forEach((key, usage) -> addToAncestors(rolledUp, key, usage.getBytes(), usage.getFileCount()));
+        return rolledUp;
+    }
+
+    private void addToAncestors(String directoryPath, long bytes, long fileCount) {
+        addToAncestors(usages, directoryPath, bytes, fileCount);
+    }
+
+    private void addToAncestors(Map<String, DirectoryUsage> usages, String directoryPath, long bytes, long fileCount) {
+        String key = directoryPath;
+        while (key != null && (key.equals(rootDirectory) || key.startsWith(rootDirectory + File.separator))) {
+            usages.computeIfAbsent(key, k -> new DirectoryUsage()).add(bytes, fileCount);
+            key = new File(key).getParent();
+        }
+    }
+
+    private boolean isStorageFile(String path) {
+        File file = new File(path);
+        return rootDirectory.equals(file.getParent()) && STORAGE_FILES.contains(file.getName());
+    }
+
+    private Map<String, DirectoryUsage> scan() {
+        Map<String, DirectoryUsage> scanned = scan(rootDirectory);
+        scanned.putIfAbsent(rootDirectory, new DirectoryUsage());
+        return scanned;
+    }
+
+    // Post-order obilazak: kad se folder zavrsi, njegov zbir se dodaje roditelju
+    private Map<String, DirectoryUsage> scan(String start) {
+        Map<String, DirectoryUsage> scanned = new HashMap<>();
+        try {
+            Files.walkFileTree(Paths.get(start), new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (BlobStore.isBlobPath(rootDirectory, dir.toString()) || TrashReclaimer.isTrashPath(rootDirectory, dir.toString()))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    scanned.put(dir.toString(), new DirectoryUsage());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!isStorageFile(file.toString()))
+                        scanned.get(file.getParent().toString()).add(attrs.size(), 1);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    if (!dir.toString().equals(start)) {
+                        DirectoryUsage usage = scanned.get(dir.toString());
+                        scanned.get(dir.getParent().toString()).add(usage.getBytes(), usage.getFileCount());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return scanned;
+    }
+
+    public String getRootDirectory() {
+        return rootDirectory;
+    }
+}
@@ -0,0 +1,40 @@
+package rs.edu.raf.storage.accounting;
+
+import rs.edu.raf.storage.StorageModel;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Pozadinska nit koja povremeno ponovo skenira skladiste i ispravlja zauzece koje je odstupilo od stanja na disku
+// (npr. zbog fajlova koji su menjani mimo skladista)
+public class UsageReconciler {
+
+    private final StorageModel storageModel;
+    private final long intervalSeconds;
+    private ScheduledExecutorService executor;
+
+    public UsageReconciler(StorageModel storageModel, long intervalSeconds) {
+        this.storageModel = storageModel;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public synchronized void start() {
+        if (executor != null)
+            return;
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "storage-usage-reconciler-" + storageModel.getRootDirectory());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(storageModel::reconcileUsage, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package rs.edu.raf.storage.admission;
+
+import rs.edu.raf.storage.StorageModel;
+
+// Rezervacija koju drzi prihvacena grupa dok se fajlovi upisuju: bajtovi kvote i mesta u folderu sa ogranicenjem.
+// Druge operacije vide rezervisano kao vec zauzeto, pa ni istovremeni upisi ne mogu prekoraciti ogranicenja.
+// Posle upisa (kada je stvarno zauzece vec azurirano) rezervacija se oslobadja preko close().
+public class Admission implements AutoCloseable {
+
+    private final StorageModel storageModel;
+    private final String directory;
+    private int reservedEntries;
+    private long reservedBytes;
+    private boolean released = false;
+
+    Admission(StorageModel storageModel, String directory, int reservedEntries, long reservedBytes) {
+        this.storageModel = storageModel;
+        this.directory = directory;
+        this.reservedEntries = reservedEntries;
+        this.reservedBytes = reservedBytes;
+    }
+
+    // Dodatna rezervacija kvote kada velicina nije poznata unapred (npr. upis iz kanala)
+    public synchronized boolean reserveBytes(long bytes) {
+        if (released || !storageModel.reserveStorage(bytes))
+            return false;
+        reservedBytes += bytes;
+        return true;
+    }
+
+    // Nova stavka je upisana - brojac foldera se uvecava i jedno rezervisano mesto oslobadja u istom koraku
+    public synchronized void entryAdded(String path) {
+        if (reservedEntries > 0 && !released) {
+            storageModel.getDirectoryEntryCounter().entryAddedFromReservation(path);
+            reservedEntries--;
+        } else {
+            storageModel.getDirectoryEntryCounter().entryAdded(path);
+        }
+    }
+
+    // Upis je zavrsen - zauzece se menja za stvarno upisane bajtove, a rezervacija za reservedPortion se oslobadja
+    public synchronized void storageChanged(long delta, long reservedPortion) {
+        long release = released ? 0 : Math.min(Math.max(reservedPortion, 0), reservedBytes);
+        storageModel.changeStorageSize(delta, release);
+        reservedBytes -= release;
+    }
+
+    public long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (released)
+            return;
+        released = true;
+        storageModel.releaseStorage(reservedBytes);
+        if (reservedEntries > 0)
+            storageModel.getDirectoryEntryCounter().release(directory, reservedEntries);
+    }
+}
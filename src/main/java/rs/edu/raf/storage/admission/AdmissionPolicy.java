@@ -0,0 +1,102 @@
+package rs.edu.raf.storage.admission;
+
+import rs.edu.raf.storage.StorageModel;
+import rs.edu.raf.storage.exceptions.*;
+import rs.edu.raf.storage.user_management.User;
+
+import java.io.File;
+import java.util.*;
+
+// Pravila za dodavanje u skladiste (zabranjene ekstenzije, kvota, broj fajlova po folderu), prevedena iz konfiguracije skladista.
+// Pravi se ponovo kad se promeni restrictExtension, limitStorageSize ili limitNumberOfFiles.
+public class AdmissionPolicy {
+
+    private final Set<String> restrictedSuffixes = new HashSet<>();
+    private final int[] suffixLengths;
+    private final Map<String, Integer> fileLimits;
+
+    private AdmissionPolicy(StorageModel storageModel) {
+        TreeSet<Integer> lengths = new TreeSet<>();
+        for (String extension : storageModel.getUnsupportedExtensions()) {
+            restrictedSuffixes.add(extension);
+            lengths.add(extension.length());
+        }
+        this.suffixLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+        // Putanje se normalizuju (npr. "root/" i "root" su isti folder)
+        this.fileLimits = new HashMap<>();
+        storageModel.getMaxNumberOfFilesInDirectory().forEach((directory, limit) -> fileLimits.put(new File(directory).getPath(), limit));
+    }
+
+    public static AdmissionPolicy compile(StorageModel storageModel) {
+        return new AdmissionPolicy(storageModel);
+    }
+
+    // Isto sto i filename.endsWith(extension) za svaku zabranjenu ekstenziju, ali jedan hash lookup po duzini sufiksa
+    public boolean isExtensionRestricted(String filename) {
+        for (int length : suffixLengths) {
+            if (length > filename.length())
+                break;
+            if (restrictedSuffixes.contains(filename.substring(filename.length() - length)))
+                return true;
+        }
+        return false;
+    }
+
+    // Najveci broj fajlova u folderu; null ako folder nema ogranicenje
+    public Integer getFileLimit(String directory) {
+        return fileLimits.get(new File(directory).getPath());
+    }
+
+    // Sve provere za grupu stavki u jednom prolazu; baca izuzetak pre nego sto se bilo koji fajl upise.
+    // Broj stavki i bajtovi grupe se rezervisu atomski - rezervacija se oslobadja zatvaranjem vracenog Admission-a.
+    public Admission admit(AdmissionRequest request, StorageModel storageModel) {
+        User user = storageModel.getCurrentUser();
+
+        // Provera da li je trenutni korisnik null
+        if (user == null)
+            throw new CurrentUserIsNullException();
+
+        // Provera privilegija:
+        if (!user.getPrivileges().contains(request.getPrivilege()))
+            throw new InsufficientPrivilegesException();
+
+        // Provera privilegija na nivou foldera:
+        if (!storageModel.getPrivilegeResolver(user).isAllowed(request.getDirectory(), request.getPrivilege()))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
+
+        // Provera da li postoji folder u koji se dodaje (interni folderi skladista se ne vide)
+        if (!new File(request.getDirectory()).exists() || storageModel.isInternalPath(request.getDirectory()))
+            throw new FileNotFoundException();
+
+        // Novi fajl ne sme da zauzme ime internog foldera
+        for (String filename : request.getFilenames()) {
+            if (storageModel.isInternalPath(request.getDirectory() + File.separator + new File(filename).getName()))
+                throw new OperationFailedException();
+        }
+
+        // Provera da li je dozvoljena ekstenzija fajlova:
+        if (!restrictedSuffixes.isEmpty()) {
+            for (String filename : request.getFilenames()) {
+                if (isExtensionRestricted(filename))
+                    throw new InvalidExtensionException();
+            }
+        }
+
+        // Rezervacija mesta u folderu - jednom za celu grupu:
+        Integer fileLimit = getFileLimit(request.getDirectory());
+        int reservedEntries = 0;
+        if (fileLimit != null) {
+            if (!storageModel.getDirectoryEntryCounter().tryReserve(request.getDirectory(), request.getEntryCount(), fileLimit))
+                throw new FileLimitExceededException();
+            reservedEntries = request.getEntryCount();
+        }
+
+        // Rezervacija velicine skladista u bajtovima - za sve fajlove zajedno:
+        if (!storageModel.reserveStorage(request.getBytes())) {
+            if (reservedEntries > 0)
+                storageModel.getDirectoryEntryCounter().release(request.getDirectory(), reservedEntries);
+            throw new StorageSizeExceededException();
+        }
+        return new Admission(storageModel, request.getDirectory(), reservedEntries, request.getBytes());
+    }
+}
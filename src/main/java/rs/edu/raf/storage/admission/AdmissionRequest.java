@@ -0,0 +1,55 @@
+package rs.edu.raf.storage.admission;
+
+import rs.edu.raf.storage.enums.Privileges;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Jedna grupa novih stavki koje se dodaju u isti folder - proverava se odjednom, pre nego sto se bilo sta upise
+public class AdmissionRequest {
+
+    private final String directory;
+    private final Privileges privilege;
+    private final List<String> filenames = new ArrayList<>();
+    private int entryCount = 0;
+    private long bytes = 0;
+
+    public AdmissionRequest(String directory, Privileges privilege) {
+        this.directory = directory;
+        this.privilege = privilege;
+    }
+
+    // Fajl cije se ime proverava na zabranjene ekstenzije i cija se velicina racuna u kvotu
+    public AdmissionRequest addFile(String filename, long size) {
+        filenames.add(filename);
+        entryCount++;
+        bytes += size;
+        return this;
+    }
+
+    // Stavke koje se samo broje (npr. premestanje unutar skladista)
+    public AdmissionRequest addEntries(int count) {
+        entryCount += count;
+        return this;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public Privileges getPrivilege() {
+        return privilege;
+    }
+
+    public List<String> getFilenames() {
+        return filenames;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
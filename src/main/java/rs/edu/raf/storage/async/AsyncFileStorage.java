@@ -0,0 +1,190 @@
+package rs.edu.raf.storage.async;
+
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.StorageModel;
+import rs.edu.raf.storage.batch.StorageBatch;
+import rs.edu.raf.storage.enums.Operations;
+import rs.edu.raf.storage.listing.FileEntry;
+import rs.edu.raf.storage.listing.ListingPage;
+import rs.edu.raf.storage.query.StorageQuery;
+import rs.edu.raf.storage.session.StorageSession;
+import rs.edu.raf.storage.transfer.PutResult;
+import rs.edu.raf.storage.user_management.User;
+
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Asinhroni pristup skladistu: svaka operacija se izvrsava na executor-u i vraca CompletableFuture,
+// pa pozivalac ne ceka na disk. Izuzeci iz operacija (npr. InsufficientPrivilegesException) zavrsavaju future sa greskom.
+public class AsyncFileStorage implements AutoCloseable {
+
+    private final LocalFileStorageImplementation storage;
+    // Sesija kroz koju idu sve operacije (null - operacije idu direktno preko skladista)
+    private final StorageSession session;
+    private final Executor executor;
+    // Executor koji je napravila ova klasa i koji treba ugasiti na close()
+    private final ExecutorService ownedExecutor;
+
+    public AsyncFileStorage(LocalFileStorageImplementation storage) {
+        this(storage, null, null);
+    }
+
+    public AsyncFileStorage(LocalFileStorageImplementation storage, Executor executor) {
+        this(storage, null, executor);
+    }
+
+    // Sve operacije se izvrsavaju kao korisnik sesije, bez obzira na nit koja ih je pokrenula
+    public AsyncFileStorage(StorageSession session) {
+        this(session.getStorage(), session, null);
+    }
+
+    public AsyncFileStorage(StorageSession session, Executor executor) {
+        this(session.getStorage(), session, executor);
+    }
+
+    // Podrazumevani executor: pool daemon niti koji raste po potrebi. Operacije blokiraju na disku, pa bi
+    // ograniceni pool drzao brze operacije u redu iza sporih (npr. velikog put-a); niti koje miruju 60s se gase.
+    private AsyncFileStorage(LocalFileStorageImplementation storage, StorageSession session, Executor executor) {
+        this.storage = storage;
+        this.session = session;
+        if (executor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.ownedExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "storage-async-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = ownedExecutor;
+        } else {
+            this.executor = executor;
+            this.ownedExecutor = null;
+        }
+    }
+
+    public CompletableFuture<Void> createFolderAsync(String path, String ...folderNames) {
+        return run(() -> storage.createFolder(path, folderNames));
+    }
+
+    public CompletableFuture<Void> createFileAsync(String path, String ...filenames) {
+        return run(() -> storage.createFile(path, filenames));
+    }
+
+    public CompletableFuture<Void> deleteAsync(String ...paths) {
+        return run(() -> storage.delete(paths));
+    }
+
+    public CompletableFuture<Void> getAsync(String ...paths) {
+        return run(() -> storage.get(paths));
+    }
+
+    public CompletableFuture<Void> moveAsync(String destination, String ...sources) {
+        return run(() -> storage.move(destination, sources));
+    }
+
+    public CompletableFuture<Void> putAsync(String destination, String ...sources) {
+        return run(() -> storage.put(destination, sources));
+    }
+
+    public CompletableFuture<Void> putAsync(String destination, String filename, ReadableByteChannel source) {
+        return run(() -> storage.put(destination, filename, source));
+    }
+
+    public CompletableFuture<Void> putAsync(String destination, String filename, InputStream source) {
+        return run(() -> storage.put(destination, filename, source));
+    }
+
+    public CompletableFuture<Void> executeBatchAsync(StorageBatch batch) {
+        return run(() -> storage.executeBatch(batch));
+    }
+
+    public CompletableFuture<List<PutResult>> putParallelAsync(String destination, String ...sources) {
+        return supply(() -> storage.putParallel(destination, sources));
+    }
+
+    public CompletableFuture<SeekableByteChannel> openReadAsync(String path) {
+        return supply(() -> storage.openRead(path));
+    }
+
+    public CompletableFuture<Collection<String>> listAsync(String path, boolean searchSubdirectories) {
+        return supply(() -> storage.list(path, searchSubdirectories));
+    }
+
+    public CompletableFuture<Collection<String>> listAsync(String path, String argument, Operations operation, boolean searchSubdirectories) {
+        return supply(() -> storage.list(path, argument, operation, searchSubdirectories));
+    }
+
+    public CompletableFuture<Collection<String>> listAsync(String path, String argument, Operations operation, int limit, boolean searchSubdirectories) {
+        return supply(() -> storage.list(path, argument, operation, limit, searchSubdirectories));
+    }
+
+    public CompletableFuture<List<FileEntry>> listEntriesAsync(String path, String argument, Operations operation, boolean searchSubdirectories) {
+        return supply(() -> storage.listEntries(path, argument, operation, searchSubdirectories));
+    }
+
+    public CompletableFuture<List<FileEntry>> queryAsync(StorageQuery query) {
+        return supply(() -> storage.query(query));
+    }
+
+    public CompletableFuture<ListingPage> listPageAsync(String path, boolean searchSubdirectories, String continuationToken, int pageSize) {
+        return supply(() -> storage.listPage(path, searchSubdirectories, continuationToken, pageSize));
+    }
+
+    public CompletableFuture<Void> flushAsync() {
+        return run(storage::flush);
+    }
+
+    // Korisnik sesije je vezan za nit pozivaoca (ThreadLocal), pa se uzima pri pozivu
+    // i vezuje za nit executor-a dok operacija traje
+    private <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        if (session != null)
+            return CompletableFuture.supplyAsync(() -> session.call(operation), executor);
+
+        StorageModel storageModel = storage.getCurrentStorage();
+        User user = storageModel != null ? storageModel.getSessionUser() : null;
+        return CompletableFuture.supplyAsync(() -> {
+            if (storageModel == null)
+                return operation.get();
+            User previous = storageModel.bindSessionUser(user);
+            try {
+                return operation.get();
+            } finally {
+                storageModel.bindSessionUser(previous);
+            }
+        }, executor);
+    }
+
+    private CompletableFuture<Void> run(Runnable operation) {
+        return supply(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    public LocalFileStorageImplementation getStorage() {
+        return storage;
+    }
+
+    public StorageSession getSession() {
+        return session;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    // Gasi samo executor koji je napravila ova klasa; skladiste se zatvara posebno
+    @Override
+    public void close() {
+        if (ownedExecutor != null)
+            ownedExecutor.shutdown();
+    }
+}
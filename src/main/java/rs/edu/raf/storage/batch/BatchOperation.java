@@ -0,0 +1,41 @@
+package rs.edu.raf.storage.batch;
+
+// Jedna operacija u grupi. Putanje su relativne u odnosu na koren skladista, osim source-a za PUT koji je van skladista.
+public class BatchOperation {
+
+    public enum Type {
+        CREATE_FOLDER,
+        PUT,
+        MOVE,
+        DELETE
+    }
+
+    private final Type type;
+    // Folder u kome se operacija izvrsava (CREATE_FOLDER, PUT, MOVE) ili putanja koja se brise (DELETE)
+    private final String path;
+    // Ime novog foldera (CREATE_FOLDER) ili putanja fajla koji se dodaje/premesta (PUT, MOVE)
+    private final String argument;
+
+    public BatchOperation(Type type, String path, String argument) {
+        this.type = type;
+        this.path = path;
+        this.argument = argument;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    @Override
+    public String toString() {
+        return argument == null ? type + " " + path : type + " " + path + " " + argument;
+    }
+}
@@ -0,0 +1,284 @@
+package rs.edu.raf.storage.batch;
+
+import rs.edu.raf.storage.StorageModel;
+import rs.edu.raf.storage.admission.AdmissionPolicy;
+import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.exceptions.*;
+import rs.edu.raf.storage.security.FolderPrivilegeResolver;
+import rs.edu.raf.storage.user_management.User;
+
+import java.io.File;
+import java.util.*;
+
+// Provera cele grupe pre nego sto se bilo sta promeni na disku: privilegije, postojanje putanja, ekstenzije,
+// broj fajlova po folderu i kvota. Operacije se "izvrsavaju" nad pogledom na skladiste (disk + izmene prethodnih
+// operacija iz grupe), pa npr. put u folder koji pravi ranija operacija iz iste grupe prolazi proveru.
+// Mesta u folderima i bajtovi se rezervisu za celu grupu; rezervacija se oslobadja preko close().
+public class BatchPlan implements AutoCloseable {
+
+    private final StorageModel storageModel;
+    private final List<BatchStep> steps = new ArrayList<>();
+    // Izmene pogleda: putanja -> odakle je sadrzaj ("" za novu stavku, putanja na disku za premestenu, null za obrisanu)
+    private final Map<String, String> overlay = new HashMap<>();
+    private final Set<String> newDirectories = new HashSet<>();
+    private final Map<String, Integer> entryChanges = new HashMap<>();
+    private final Set<String> lockedDirectories = new TreeSet<>();
+    private final Map<String, Integer> reservedEntries = new HashMap<>();
+    private long bytes = 0;
+    private long reservedBytes = 0;
+
+    private BatchPlan(StorageModel storageModel) {
+        this.storageModel = storageModel;
+    }
+
+    public static BatchPlan validate(StorageBatch batch, StorageModel storageModel) {
+        User user = storageModel.getCurrentUser();
+
+        // Provera da li je trenutni korisnik null
+        if (user == null)
+            throw new CurrentUserIsNullException();
+
+        FolderPrivilegeResolver resolver = storageModel.getPrivilegeResolver(user);
+        AdmissionPolicy policy = storageModel.getAdmissionPolicy();
+        String rootDirectory = storageModel.getRootDirectory();
+        BatchPlan plan = new BatchPlan(storageModel);
+
+        for (BatchOperation operation : batch.getOperations()) {
+            switch (operation.getType()) {
+                case CREATE_FOLDER: {
+                    String parent = path(rootDirectory, operation.getPath());
+                    checkPrivilege(user, resolver, parent, Privileges.CREATE);
+                    plan.requireDirectory(parent);
+
+                    String target = parent + "/" + operation.getArgument();
+                    checkNotInternal(storageModel, target);
+                    // Kao i createFolder - folder koji vec postoji se preskace
+                    if (plan.exists(target)) {
+                        if (!plan.isDirectory(target))
+                            throw new OperationFailedException();
+                        break;
+                    }
+                    plan.entryAdded(parent);
+                    plan.created(target, true);
+                    plan.steps.add(new BatchStep(BatchOperation.Type.CREATE_FOLDER, target, null, 0));
+                    break;
+                }
+                case PUT: {
+                    String destination = path(rootDirectory, operation.getPath());
+                    checkPrivilege(user, resolver, destination, Privileges.CREATE);
+                    plan.requireDirectory(destination);
+
+                    // Provera da li postoji source fajl i da li je vec u skladistu
+                    File source = new File(operation.getArgument());
+                    if (!source.isFile())
+                        throw new FileNotFoundException();
+                    if (operation.getArgument().contains(rootDirectory))
+                        throw new FileAlreadyInStorageException();
+
+                    // Provera da li je dozvoljena ekstenzija fajla:
+                    if (policy.isExtensionRestricted(source.getName()))
+                        throw new InvalidExtensionException();
+
+                    String target = destination + "/" + source.getName();
+                    checkNotInternal(storageModel, target);
+                    if (plan.exists(target)) {
+                        if (plan.isDirectory(target))
+                            throw new OperationFailedException();
+                    } else {
+                        plan.entryAdded(destination);
+                    }
+                    long size = source.length();
+                    plan.bytes += size;
+                    plan.created(target, false);
+                    plan.steps.add(new BatchStep(BatchOperation.Type.PUT, target, source.getPath(), size));
+                    break;
+                }
+                case MOVE: {
+                    String destination = path(rootDirectory, operation.getPath());
+                    checkPrivilege(user, resolver, destination, Privileges.CREATE);
+                    plan.requireDirectory(destination);
+
+                    String source = path(rootDirectory, operation.getArgument());
+                    if (!plan.exists(source) || storageModel.isInternalPath(source))
+                        throw new FileNotFoundException();
+
+                    String target = destination + "/" + new File(source).getName();
+                    if (target.equals(source))
+                        break;
+                    // Folder ne moze da se premesti u samog sebe, a postojeci folder se ne zamenjuje
+                    if (target.startsWith(source + "/") || (plan.exists(target) && plan.isDirectory(target)))
+                        throw new OperationFailedException();
+
+                    boolean directory = plan.isDirectory(source);
+                    String sourceParent = source.substring(0, source.lastIndexOf('/'));
+                    plan.entryRemoved(sourceParent);
+                    if (!plan.exists(target))
+                        plan.entryAdded(destination);
+                    plan.moved(source, target, directory);
+                    plan.lockedDirectories.add(sourceParent);
+                    plan.steps.add(new BatchStep(BatchOperation.Type.MOVE, target, source, 0));
+                    break;
+                }
+                case DELETE: {
+                    String target = path(rootDirectory, operation.getPath());
+                    String parent = target.substring(0, target.lastIndexOf('/'));
+
+                    // Provera privilegija (za folder - u celom podstablu, jer se brise u celosti ili nikako)
+                    checkPrivilege(user, resolver, parent, Privileges.DELETE);
+                    if (!plan.exists(target) || storageModel.isInternalPath(target))
+                        throw new FileNotFoundException();
+                    if (plan.isDirectory(target) && !resolver.isAllowedInSubtree(target, Privileges.DELETE))
+                        throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
+
+                    plan.entryRemoved(parent);
+                    plan.overlay.put(target, null);
+                    plan.lockedDirectories.add(parent);
+                    plan.steps.add(new BatchStep(BatchOperation.Type.DELETE, target, null, 0));
+                    break;
+                }
+            }
+        }
+
+        plan.reserve(policy);
+        return plan;
+    }
+
+    // Putanja u skladistu bez duplih i zavrsnih '/' - ista stavka uvek ima isti kljuc u pogledu
+    private static String path(String rootDirectory, String relativePath) {
+        return new File(rootDirectory + "/" + relativePath).getPath();
+    }
+
+    private static void checkPrivilege(User user, FolderPrivilegeResolver resolver, String directory, Privileges privilege) {
+        // Provera privilegija:
+        if (!user.getPrivileges().contains(privilege))
+            throw new InsufficientPrivilegesException();
+
+        // Provera privilegija na nivou foldera:
+        if (!resolver.isAllowed(directory, privilege))
+            throw new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije.");
+    }
+
+    // Rezervacija mesta u folderima sa ogranicenjem (za konacan broj stavki posle cele grupe) i bajtova za sve put-ove
+    private void reserve(AdmissionPolicy policy) {
+        for (Map.Entry<String, Integer> change : entryChanges.entrySet()) {
+            Integer fileLimit = policy.getFileLimit(change.getKey());
+            if (fileLimit == null || change.getValue() <= 0)
+                continue;
+            if (!storageModel.getDirectoryEntryCounter().tryReserve(change.getKey(), change.getValue(), fileLimit)) {
+                close();
+                throw new FileLimitExceededException();
+            }
+            reservedEntries.put(change.getKey(), change.getValue());
+        }
+
+        if (!storageModel.reserveStorage(bytes)) {
+            close();
+            throw new StorageSizeExceededException();
+        }
+        reservedBytes = bytes;
+    }
+
+    private void requireDirectory(String path) {
+        // Provera da li postoji folder
+        if (!exists(path) || !isDirectory(path) || storageModel.isInternalPath(path))
+            throw new FileNotFoundException();
+        lockedDirectories.add(path);
+    }
+
+    private void entryAdded(String directory) {
+        entryChanges.merge(directory, 1, Integer::sum);
+    }
+
+    private void entryRemoved(String directory) {
+        entryChanges.merge(directory, -1, Integer::sum);
+    }
+
+    private void created(String path, boolean directory) {
+        overlay.put(path, "");
+        if (directory)
+            newDirectories.add(path);
+        else
+            newDirectories.remove(path);
+    }
+
+    private void moved(String source, String target, boolean directory) {
+        String origin = origin(source);
+        overlay.put(source, null);
+        overlay.put(target, origin == null ? "" : origin);
+        if (directory && origin == null)
+            newDirectories.add(target);
+        else
+            newDirectories.remove(target);
+    }
+
+    // Putanja na disku sa koje stavka potice u pogledu; null ako je stavka nastala u ovoj grupi
+    private String origin(String path) {
+        for (String key = path; key != null; key = new File(key).getParent()) {
+            if (!overlay.containsKey(key))
+                continue;
+            String origin = overlay.get(key);
+            if (origin == null || origin.isEmpty())
+                return null;
+            return origin + path.substring(key.length());
+        }
+        return path;
+    }
+
+    // Nova stavka ne sme da zauzme ime internog foldera skladista (.blobs, .trash)
+    private static void checkNotInternal(StorageModel storageModel, String target) {
+        if (storageModel.isInternalPath(target))
+            throw new OperationFailedException();
+    }
+
+    private boolean exists(String path) {
+        for (String key = path; key != null; key = new File(key).getParent()) {
+            if (!overlay.containsKey(key))
+                continue;
+            String origin = overlay.get(key);
+            if (origin == null)
+                return false;
+            if (key.equals(path))
+                return true;
+            // Unutar nove stavke postoji samo ono sto je dodato u ovoj grupi
+            if (origin.isEmpty())
+                return false;
+            return new File(origin + path.substring(key.length())).exists();
+        }
+        return new File(path).exists();
+    }
+
+    private boolean isDirectory(String path) {
+        if (newDirectories.contains(path))
+            return true;
+        String origin = origin(path);
+        return origin != null && new File(origin).isDirectory();
+    }
+
+    public List<BatchStep> getSteps() {
+        return steps;
+    }
+
+    // Folderi koji se zakljucavaju za vreme izvrsavanja grupe
+    public String[] getLockedDirectories() {
+        return lockedDirectories.toArray(new String[0]);
+    }
+
+    public long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    // Jedna promena zauzeca za celu grupu, uz oslobadjanje rezervisanih bajtova
+    public void commit(long storageDelta) {
+        storageModel.changeStorageSize(storageDelta, reservedBytes);
+        reservedBytes = 0;
+    }
+
+    @Override
+    public void close() {
+        storageModel.releaseStorage(reservedBytes);
+        reservedBytes = 0;
+        for (Map.Entry<String, Integer> reserved : reservedEntries.entrySet())
+            storageModel.getDirectoryEntryCounter().release(reserved.getKey(), reserved.getValue());
+        reservedEntries.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package rs.edu.raf.storage.batch;
+
+// Operacija iz grupe posle provere: apsolutne putanje i velicina poznati pre izvrsavanja
+public class BatchStep {
+
+    private final BatchOperation.Type type;
+    // Stavka koja nastaje (CREATE_FOLDER, PUT, MOVE) ili se brise (DELETE)
+    private final String target;
+    // Fajl van skladista (PUT) ili stavka koja se premesta (MOVE)
+    private final String source;
+    private final long size;
+
+    public BatchStep(BatchOperation.Type type, String target, String source, long size) {
+        this.type = type;
+        this.target = target;
+        this.source = source;
+        this.size = size;
+    }
+
+    public BatchOperation.Type getType() {
+        return type;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
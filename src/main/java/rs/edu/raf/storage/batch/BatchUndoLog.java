@@ -0,0 +1,71 @@
+package rs.edu.raf.storage.batch;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+
+// Koraci za ponistavanje izvrsenih operacija grupe. Stavke koje grupa brise ili zamenjuje se ne brisu odmah,
+// vec se preimenuju u folder za pripremu (u .trash folderu skladista), pa se pri ponistavanju samo vracaju nazad.
+// Posle uspesne grupe folder za pripremu se brise u celosti.
+public class BatchUndoLog {
+
+    public interface UndoAction {
+        void undo() throws IOException;
+    }
+
+    private final Path trashDirectory;
+    private final Deque<UndoAction> actions = new ArrayDeque<>();
+    private Path stagingDirectory;
+    private int stagedCount = 0;
+    private long stagedBytes = 0;
+
+    public BatchUndoLog(Path trashDirectory) {
+        this.trashDirectory = trashDirectory;
+    }
+
+    // Premestanje stavke u folder za pripremu - jedno preimenovanje, i za fajl i za celo stablo (bytes - zauzece stavke)
+    public Path stage(Path path, long bytes) throws IOException {
+        if (stagingDirectory == null) {
+            Files.createDirectories(trashDirectory);
+            stagingDirectory = Files.createDirectory(trashDirectory.resolve("batch-" + UUID.randomUUID()));
+        }
+        Path staged = stagingDirectory.resolve(Integer.toString(stagedCount++));
+        Files.move(path, staged, StandardCopyOption.ATOMIC_MOVE);
+        stagedBytes += bytes;
+        return staged;
+    }
+
+    public void record(UndoAction action) {
+        actions.push(action);
+    }
+
+    // Ponistavanje obrnutim redom; korak koji ne uspe se prijavljuje, a ostali se ipak izvrsavaju
+    public void rollback() {
+        while (!actions.isEmpty()) {
+            try {
+                actions.pop().undo();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        if (stagingDirectory != null) {
+            try {
+                Files.deleteIfExists(stagingDirectory);
+                stagingDirectory = null;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public long getStagedBytes() {
+        return stagedBytes;
+    }
+
+    // Folder sa obrisanim i zamenjenim stavkama; null ako grupa nista nije obrisala ni zamenila
+    public Path getStagingDirectory() {
+        return stagingDirectory;
+    }
+}
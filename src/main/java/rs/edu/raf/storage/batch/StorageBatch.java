@@ -0,0 +1,43 @@
+package rs.edu.raf.storage.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Niz operacija koje se izvrsavaju kao jedna celina (executeBatch): ili se izvrse sve, ili nijedna.
+public class StorageBatch {
+
+    private final List<BatchOperation> operations = new ArrayList<>();
+
+    public StorageBatch createFolder(String path, String folderName) {
+        operations.add(new BatchOperation(BatchOperation.Type.CREATE_FOLDER, path, folderName));
+        return this;
+    }
+
+    public StorageBatch put(String destination, String source) {
+        operations.add(new BatchOperation(BatchOperation.Type.PUT, destination, source));
+        return this;
+    }
+
+    public StorageBatch move(String destination, String source) {
+        operations.add(new BatchOperation(BatchOperation.Type.MOVE, destination, source));
+        return this;
+    }
+
+    public StorageBatch delete(String path) {
+        operations.add(new BatchOperation(BatchOperation.Type.DELETE, path, null));
+        return this;
+    }
+
+    public List<BatchOperation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+}
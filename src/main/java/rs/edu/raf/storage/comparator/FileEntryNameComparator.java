@@ -0,0 +1,12 @@
+package rs.edu.raf.storage.comparator;
+
+import rs.edu.raf.storage.listing.FileEntry;
+
+import java.util.Comparator;
+
+public class FileEntryNameComparator implements Comparator<FileEntry> {
+    @Override
+    public int compare(FileEntry o1, FileEntry o2) {
+        return o1.getName().compareToIgnoreCase(o2.getName());
+    }
+}
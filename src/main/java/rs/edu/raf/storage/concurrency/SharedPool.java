@@ -0,0 +1,83 @@
+package rs.edu.raf.storage.concurrency;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Pool niti koji dele vlasnik i sve njegove sesije. Pozivalac uzima pool preko acquire() i vraca ga zatvaranjem Lease-a.
+// Zamena pool-a (npr. posle promene broja niti) ne gasi stari pool odmah: pozivaoci koji su ga vec uzeli
+// zavrsavaju na njemu, a gasi se tek kad ga poslednji od njih vrati.
+public class SharedPool<T> {
+
+    private final Consumer<T> shutdown;
+    private Slot current;
+
+    public SharedPool(Consumer<T> shutdown) {
+        this.shutdown = shutdown;
+    }
+
+    // Trenutni pool; ako ne postoji pravi se preko factory-ja (null factory - vraca null umesto Lease-a)
+    public synchronized Lease acquire(Supplier<T> factory) {
+        if (current == null) {
+            if (factory == null)
+                return null;
+            current = new Slot(factory.get());
+        }
+        current.users++;
+        return new Lease(current);
+    }
+
+    public synchronized T get() {
+        return current == null ? null : current.value;
+    }
+
+    // Novi pool (null - bez pool-a); stari se gasi kad ga vrati poslednji pozivalac koji ga koristi
+    public synchronized void replace(T value) {
+        Slot previous = current;
+        current = value == null ? null : new Slot(value);
+        if (previous != null) {
+            previous.retired = true;
+            if (previous.users == 0)
+                shutdown.accept(previous.value);
+        }
+    }
+
+    public void shutdown() {
+        replace(null);
+    }
+
+    private synchronized void release(Slot slot) {
+        if (--slot.users == 0 && slot.retired)
+            shutdown.accept(slot.value);
+    }
+
+    private class Slot {
+        private final T value;
+        private int users = 0;
+        private boolean retired = false;
+
+        private Slot(T value) {
+            this.value = value;
+        }
+    }
+
+    public class Lease implements AutoCloseable {
+        private final Slot slot;
+        private boolean released = false;
+
+        private Lease(Slot slot) {
+            this.slot = slot;
+        }
+
+        public T get() {
+            return slot.value;
+        }
+
+        @Override
+        public void close() {
+            if (released)
+                return;
+            released = true;
+            release(slot);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package rs.edu.raf.storage.concurrency;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Zakljucavanje po folderima preko fiksnog broja lock-ova (stripe-ova): folder se preslikava u stripe po hash-u putanje,
+// pa operacije u razlicitim folderima (skoro) nikad ne cekaju jedna drugu.
+// Kad operacija zakljucava vise foldera, stripe-ovi se uvek uzimaju rastucim redom, pa ne moze doci do deadlock-a.
+public class StripedPathLock {
+
+    private final ReentrantLock[] stripes;
+
+    public StripedPathLock(int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+            stripes[i] = new ReentrantLock();
+    }
+
+    public Locked lock(String ...paths) {
+        int[] indexes = Arrays.stream(paths).mapToInt(this::stripeOf).distinct().sorted().toArray();
+        for (int index : indexes)
+            stripes[index].lock();
+        return new Locked(indexes);
+    }
+
+    private int stripeOf(String path) {
+        return Math.floorMod(new File(path).getPath().hashCode(), stripes.length);
+    }
+
+    public class Locked implements AutoCloseable {
+
+        private final int[] indexes;
+
+        private Locked(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        public void close() {
+            for (int i = indexes.length - 1; i >= 0; i--)
+                stripes[indexes[i]].unlock();
+        }
+    }
+}
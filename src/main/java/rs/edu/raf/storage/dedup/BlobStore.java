@@ -0,0 +1,340 @@
+package rs.edu.raf.storage.dedup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Skladiste sadrzaja po hash-u (SHA-256): svaki razlicit sadrzaj se cuva jednom u folderu .blobs u korenu skladista,
+// a fajlovi u skladistu su hard linkovi na blob. Broj referenci na blob je broj linkova na njega koji vodi fajl sistem,
+// pa ostaje tacan i posle pada programa. U memoriji se drzi samo indeks hash -> velicina i inode -> hash.
+// Linkovi dele inode, pa i datum izmene i prava pristupa: fajl koji je dodat na vec postojeci blob dobija logicki
+// datum izmene (vreme upisa) koji se vodi ovde i cuva u .blobs/modified.log; prava pristupa ostaju zajednicka.
+public class BlobStore {
+
+    public static final String BLOB_FOLDER = ".blobs";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MODIFIED_LOG = "modified.log";
+
+    private final Path blobDirectory;
+    private final Map<String, Long> blobSizes = new HashMap<>();
+    private final Map<Object, String> blobsByInode = new HashMap<>();
+    // Logicki datum izmene po putanji fajla, samo za fajlove koji dele vec postojeci blob
+    private final Map<String, Long> modifiedTimes = new HashMap<>();
+
+    private BlobStore(Path blobDirectory) {
+        this.blobDirectory = blobDirectory;
+    }
+
+    // Otvaranje (ili pravljenje) .blobs foldera; null ako fajl sistem nema hard linkove i inode brojeve
+    public static BlobStore open(String rootDirectory) {
+        try {
+            Path blobDirectory = Files.createDirectories(Paths.get(rootDirectory, BLOB_FOLDER));
+            if (!Files.getFileStore(blobDirectory).supportsFileAttributeView("unix"))
+                return null;
+
+            BlobStore blobStore = new BlobStore(blobDirectory);
+            try (DirectoryStream<Path> blobs = Files.newDirectoryStream(blobDirectory)) {
+                for (Path blob : blobs) {
+                    if (blob.getFileName().toString().equals(MODIFIED_LOG))
+                        continue;
+                    // Privremeni fajl ostao od prekinutog upisa
+                    if (blob.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(blob);
+                        continue;
+                    }
+                    // Blob na koji vise ne pokazuje nijedan fajl
+                    if (linkCount(blob) <= 1) {
+                        Files.delete(blob);
+                        continue;
+                    }
+                    blobStore.register(blob.getFileName().toString(), blob);
+                }
+            }
+            blobStore.loadModifiedTimes();
+            return blobStore;
+        } catch (IOException | UnsupportedOperationException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static boolean isBlobPath(String rootDirectory, String path) {
+        String blobDirectory = Paths.get(rootDirectory, BLOB_FOLDER).toString();
+        return path.equals(blobDirectory) || path.startsWith(blobDirectory + File.separator);
+    }
+
+    // Upis fajla (stage + commit). Vraca promenu fizickog zauzeca skladista
+    // (velicina novog bloba, umanjena za oslobodjeni prepisani fajl).
+    public long store(Path source, Path target) throws IOException {
+        StagedBlob staged = stage(source);
+        try {
+            return commit(staged, target);
+        } finally {
+            if (staged.temp != null)
+                Files.deleteIfExists(staged.temp);
+        }
+    }
+
+    // Prvi deo upisa, bez zakljucavanja: izvor se prvo samo hash-uje, a kopira u privremeni fajl u .blobs folderu
+    // tek ako takvog sadrzaja jos nema (kopija se ponovo hash-uje, pa blob uvek odgovara sadrzaju koji je kopiran)
+    public StagedBlob stage(Path source) throws IOException {
+        // Izvor koji se ne moze procitati dvaput (npr. pipe) se hash-uje dok se kopira
+        if (!Files.isRegularFile(source)) {
+            StagedBlob staged = new StagedBlob(source, null, 0);
+            copy(staged);
+            return staged;
+        }
+
+        String hash;
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(source), newDigest())) {
+            in.transferTo(OutputStream.nullOutputStream());
+            hash = toHex(in.getMessageDigest().digest());
+        }
+        StagedBlob staged = new StagedBlob(source, hash, Files.size(source));
+        if (!contains(hash))
+            copy(staged);
+        return staged;
+    }
+
+    private void copy(StagedBlob staged) throws IOException {
+        Path temp = Files.createTempFile(blobDirectory, "ingest", TEMP_SUFFIX);
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(staged.source), newDigest())) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            staged.temp = temp;
+            staged.hash = toHex(in.getMessageDigest().digest());
+            staged.size = Files.size(temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Drugi deo upisa: ako blob sa istim hash-om vec postoji, kopija se brise, inace postaje blob.
+    // Link na blob se pravi pod privremenim imenom i atomski preimenuje preko cilja, pa postojeci fajl
+    // nestaje tek kad novi postoji. Blob se ne oznacava kao samo za citanje jer deli inode sa fajlom korisnika.
+    public synchronized long commit(StagedBlob staged, Path target) throws IOException {
+        // Blob koji je postojao pri pripremi je u medjuvremenu obrisan, pa se izvor ipak kopira
+        if (staged.temp == null && !blobSizes.containsKey(staged.hash))
+            copy(staged);
+
+        long change = 0;
+        Path blob = blobDirectory.resolve(staged.hash);
+        boolean created = !blobSizes.containsKey(staged.hash);
+        if (created) {
+            Files.move(staged.temp, blob, StandardCopyOption.ATOMIC_MOVE);
+            register(staged.hash, blob);
+            change += blobSizes.get(staged.hash);
+        } else if (staged.temp != null) {
+            Files.delete(staged.temp);
+        }
+        staged.temp = null;
+
+        Path link = blobDirectory.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        Object replacedInode = null;
+        long replacedSize = 0;
+        try {
+            Files.createLink(link, blob);
+            if (Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)) {
+                replacedInode = Files.getAttribute(target, "unix:ino");
+                replacedSize = Files.size(target);
+            }
+            Files.move(link, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(link);
+            if (created)
+                release(staged.hash);
+            throw e;
+        }
+        // Ako je cilj vec bio link na isti blob, preimenovanje ne radi nista i privremeni link ostaje
+        Files.deleteIfExists(link);
+
+        // Novi blob ima datum izmene upisa; fajl dodat na postojeci blob dobija logicki datum izmene
+        setModifiedTime(target.toString(), created ? null : System.currentTimeMillis());
+
+        if (replacedInode != null)
+            change -= released(replacedInode, replacedSize);
+        return change;
+    }
+
+    // Brisanje fajla iz skladista; blob se brise kad se obrise poslednji fajl koji ga koristi.
+    // Vraca koliko je bajtova fizicki oslobodjeno.
+    public synchronized long remove(Path path) throws IOException {
+        long size = Files.size(path);
+        Object inode = Files.getAttribute(path, "unix:ino");
+        Files.delete(path);
+        setModifiedTime(path.toString(), null);
+        return released(inode, size);
+    }
+
+    // Datum izmene fajla u skladistu: logicki datum ako fajl deli blob sa drugim fajlom, inace datum sa diska
+    public synchronized long lastModified(String path, long diskModified) {
+        Long modified = modifiedTimes.get(path);
+        if (modified == null)
+            return diskModified;
+        try {
+            if (blobsByInode.containsKey(Files.getAttribute(Paths.get(path), "unix:ino", LinkOption.NOFOLLOW_LINKS)))
+                return modified;
+        } catch (IOException e) {
+            // Fajl je u medjuvremenu obrisan
+        }
+        return diskModified;
+    }
+
+    // Premestanje fajla ili foldera u skladistu - logicki datumi izmene idu zajedno sa fajlovima
+    public synchronized void moved(String source, String target) {
+        String prefix = source + File.separator;
+        List<String> paths = new ArrayList<>();
+        for (String path : modifiedTimes.keySet()) {
+            if (path.equals(source) || path.startsWith(prefix))
+                paths.add(path);
+        }
+        for (String path : paths) {
+            Long modified = modifiedTimes.get(path);
+            setModifiedTime(path, null);
+            setModifiedTime(target + path.substring(source.length()), modified);
+        }
+    }
+
+    // Koliko je bajtova oslobodjeno uklanjanjem fajla sa datim inode-om: fajl koji nije dodat preko blob skladista
+    // oslobadja svoju velicinu, a blob tek kad nestane poslednji fajl koji ga koristi
+    private long released(Object inode, long size) throws IOException {
+        String hash = blobsByInode.get(inode);
+        if (hash == null)
+            return size;
+        return release(hash) ? size : 0;
+    }
+
+    // Brisanje bloba na koji vise ne pokazuje nijedan fajl
+    private boolean release(String hash) throws IOException {
+        Path blob = blobDirectory.resolve(hash);
+        if (linkCount(blob) > 1)
+            return false;
+        Object inode = Files.getAttribute(blob, "unix:ino");
+        Files.delete(blob);
+        blobSizes.remove(hash);
+        blobsByInode.remove(inode);
+        return true;
+    }
+
+    public synchronized boolean contains(String hash) {
+        return blobSizes.containsKey(hash);
+    }
+
+    // Bajtovi koje bi zauzele kopije kad ne bi bilo deduplikacije (za svaki blob: velicina * (broj referenci - 1))
+    public synchronized long getSharedBytes() {
+        long shared = 0;
+        for (Map.Entry<String, Long> blob : blobSizes.entrySet()) {
+            try {
+                int references = linkCount(blobDirectory.resolve(blob.getKey())) - 1;
+                if (references > 1)
+                    shared += blob.getValue() * (references - 1);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return shared;
+    }
+
+    public synchronized int getBlobCount() {
+        return blobSizes.size();
+    }
+
+    public Path getBlobDirectory() {
+        return blobDirectory;
+    }
+
+    // Sadrzaj pripremljen za upis: hash izvora i, ako takav blob jos ne postoji, privremena kopija u .blobs folderu
+    public static class StagedBlob {
+        private final Path source;
+        private Path temp;
+        private String hash;
+        private long size;
+
+        private StagedBlob(Path source, String hash, long size) {
+            this.source = source;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        // null ako se sadrzaj ne kopira (blob vec postoji) ili je upis zavrsen
+        public Path getTemp() {
+            return temp;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    // Promena logickog datuma izmene (null - fajl koristi datum sa diska) se dopisuje u log
+    private void setModifiedTime(String path, Long modified) {
+        Long previous = modified == null ? modifiedTimes.remove(path) : modifiedTimes.put(path, modified);
+        if (previous == null && modified == null)
+            return;
+        String line = (modified == null ? -1 : modified) + "\t" + path + System.lineSeparator();
+        try {
+            Files.writeString(blobDirectory.resolve(MODIFIED_LOG), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Citanje loga datuma izmene; log se prepisuje samo sa datumima fajlova koji i dalje postoje
+    private void loadModifiedTimes() throws IOException {
+        Path log = blobDirectory.resolve(MODIFIED_LOG);
+        if (!Files.exists(log))
+            return;
+        for (String line : Files.readAllLines(log)) {
+            int separator = line.indexOf('\t');
+            if (separator < 0)
+                continue;
+            long modified = Long.parseLong(line.substring(0, separator));
+            String path = line.substring(separator + 1);
+            if (modified < 0)
+                modifiedTimes.remove(path);
+            else
+                modifiedTimes.put(path, modified);
+        }
+        modifiedTimes.keySet().removeIf(path -> !Files.isRegularFile(Paths.get(path), LinkOption.NOFOLLOW_LINKS));
+
+        StringBuilder compacted = new StringBuilder();
+        for (Map.Entry<String, Long> modified : modifiedTimes.entrySet())
+            compacted.append(modified.getValue()).append('\t').append(modified.getKey()).append(System.lineSeparator());
+        Path temp = blobDirectory.resolve(MODIFIED_LOG + TEMP_SUFFIX);
+        Files.writeString(temp, compacted);
+        Files.move(temp, log, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void register(String hash, Path blob) throws IOException {
+        blobSizes.put(hash, Files.size(blob));
+        blobsByInode.put(Files.getAttribute(blob, "unix:ino"), hash);
+    }
+
+    private static int linkCount(Path path) throws IOException {
+        return (Integer) Files.getAttribute(path, "unix:nlink");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package rs.edu.raf.storage.deletion;
+
+// Zbir jednog brisanja stabla - zauzece i konfiguracija se azuriraju jednom, na osnovu ovih vrednosti
+public class DeleteResult {
+
+    private long deletedFiles;
+    private long deletedDirectories;
+    // Logicka velicina obrisanih fajlova (zbir njihovih velicina)
+    private long deletedBytes;
+    // Fizicki oslobodjeni bajtovi (sa deduplikacijom mogu biti manji od deletedBytes)
+    private long freedBytes;
+    private RuntimeException failure;
+
+    synchronized void fileDeleted(long size, long freed) {
+        deletedFiles++;
+        deletedBytes += size;
+        freedBytes += freed;
+    }
+
+    synchronized void directoryDeleted() {
+        deletedDirectories++;
+    }
+
+    synchronized void failed(RuntimeException failure) {
+        if (this.failure == null)
+            this.failure = failure;
+    }
+
+    public synchronized boolean isComplete() {
+        return failure == null;
+    }
+
+    public synchronized long getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public synchronized long getDeletedDirectories() {
+        return deletedDirectories;
+    }
+
+    public synchronized long getDeletedBytes() {
+        return deletedBytes;
+    }
+
+    public synchronized long getFreedBytes() {
+        return freedBytes;
+    }
+
+    public synchronized RuntimeException getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,259 @@
+package rs.edu.raf.storage.deletion;
+
+import rs.edu.raf.storage.StorageModel;
+import rs.edu.raf.storage.dedup.BlobStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Brzo brisanje: fajl ili folder se samo atomski preimenuje u .trash folder u korenu skladista,
+// a pozadinska nit ga kasnije brise ogranicenom brzinom i usput oslobadja zauzece.
+// Sve sto je ostalo u .trash folderu (npr. posle pada programa) se brise pri sledecem pokretanju.
+// Bajtovi koji su u .trash folderu a jos nisu oslobodjeni se vode brojacem, pa provera zauzeca ne obilazi .trash.
+public class TrashReclaimer {
+
+    public static final String TRASH_FOLDER = ".trash";
+    // Folderi za pripremu upisa (privremeni fajlovi put-a) - njihov sadrzaj nikad nije uracunat u zauzece
+    public static final String STAGING_PREFIX = "staging-";
+    // Zauzece se oslobadja posle svakih RELEASE_BATCH obrisanih fajlova (i na kraju svake stavke)
+    private static final int RELEASE_BATCH = 1000;
+
+    private final StorageModel storageModel;
+    private final Path trashDirectory;
+    private final long filesPerSecond;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong reclaimedFiles = new AtomicLong();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile boolean running = false;
+    private volatile boolean working = false;
+    private Thread thread;
+
+    // filesPerSecond <= 0 znaci bez ogranicenja brzine
+    public TrashReclaimer(StorageModel storageModel, long filesPerSecond) {
+        this.storageModel = storageModel;
+        this.trashDirectory = Paths.get(storageModel.getRootDirectory(), TRASH_FOLDER);
+        this.filesPerSecond = filesPerSecond;
+    }
+
+    public static boolean isTrashPath(String rootDirectory, String path) {
+        String trashDirectory = Paths.get(rootDirectory, TRASH_FOLDER).toString();
+        return path.equals(trashDirectory) || path.startsWith(trashDirectory + File.separator);
+    }
+
+    public static boolean hasPendingTrash(String rootDirectory) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(Paths.get(rootDirectory, TRASH_FOLDER))) {
+            return entries.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public synchronized void start() {
+        if (running)
+            return;
+
+        try {
+            Files.createDirectories(trashDirectory);
+            // Stavke ostale od prethodnog pokretanja (osim foldera za pripremu upisa koji koristi ovo pokretanje).
+            // Obrisane stavke su jos uracunate u zauzece, pa se njihova velicina dodaje brojacu;
+            // privremeni fajlovi iz starih foldera za pripremu se samo brisu.
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(trashDirectory)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (name.equals(storageModel.getStagingName()))
+                        continue;
+                    if (name.startsWith(STAGING_PREFIX))
+                        queue.add(new Entry(entry, 0, false));
+                    else
+                        add(entry, sizeOf(entry));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        running = true;
+        thread = new Thread(this::run, "storage-trash-reclaimer-" + storageModel.getRootDirectory());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Premestanje u .trash - jedno preimenovanje, nezavisno od velicine stabla; bytes je zauzece stavke (koliko ce biti oslobodjeno)
+    public Path moveToTrash(Path path, long bytes) throws IOException {
+        Path target = trashDirectory.resolve(UUID.randomUUID().toString());
+        // Preimenovanje i brojac pod lock-om modela, da provera zauzeca ne vidi jedno bez drugog
+        synchronized (storageModel) {
+            Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            add(target, bytes);
+        }
+        return target;
+    }
+
+    // Stavka koja je vec u .trash folderu (npr. folder za pripremu grupe operacija)
+    public void reclaimLater(Path entry, long bytes) {
+        add(entry, bytes);
+    }
+
+    private void add(Path path, long bytes) {
+        pendingBytes.addAndGet(bytes);
+        queue.add(new Entry(path, bytes, true));
+    }
+
+    // Nit se zaustavlja; ono sto nije obrisano ostaje u .trash folderu za sledece pokretanje
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public boolean isIdle() {
+        return queue.isEmpty() && !working;
+    }
+
+    public long getReclaimedFiles() {
+        return reclaimedFiles.get();
+    }
+
+    // Bajtovi u .trash folderu koji su jos uracunati u zauzece (menja se zajedno sa zauzecem, pod lock-om modela)
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Entry entry = queue.take();
+                working = true;
+                reclaim(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                working = false;
+            }
+        }
+    }
+
+    private void reclaim(Entry entry) {
+        BlobStore blobStore = entry.releasesStorage ? storageModel.getBlobStore() : null;
+        long[] pending = new long[2];
+        long[] window = {System.nanoTime(), 0};
+
+        try {
+            Files.walkFileTree(entry.path, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!running)
+                        return FileVisitResult.TERMINATE;
+
+                    long freed = blobStore != null ? blobStore.remove(file) : attrs.size();
+                    if (blobStore == null)
+                        Files.delete(file);
+                    reclaimedFiles.incrementAndGet();
+                    if (entry.releasesStorage)
+                        pending[0] += freed;
+                    if (++pending[1] >= RELEASE_BATCH)
+                        release(entry, pending);
+                    throttle(window);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    exc.printStackTrace();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    if (!running)
+                        return FileVisitResult.TERMINATE;
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            release(entry, pending);
+            // Ako nit nije zavrsila, stavka ostaje na disku i ponovo se broji pri sledecem pokretanju
+            synchronized (storageModel) {
+                pendingBytes.addAndGet(-entry.pendingBytes);
+                entry.pendingBytes = 0;
+            }
+        }
+    }
+
+    // Zauzece i brojac se menjaju zajedno, pa provera zauzeca nikad ne vidi obrisane bajtove ni dvaput ni nijednom
+    private void release(Entry entry, long[] pending) {
+        if (pending[0] != 0) {
+            synchronized (storageModel) {
+                storageModel.changeStorageSize(-pending[0]);
+                long settled = Math.min(pending[0], entry.pendingBytes);
+                entry.pendingBytes -= settled;
+                pendingBytes.addAndGet(-settled);
+            }
+        }
+        pending[0] = 0;
+        pending[1] = 0;
+    }
+
+    // Velicina stavke ostale od prethodnog pokretanja
+    private static long sizeOf(Path entry) {
+        AtomicLong bytes = new AtomicLong();
+        try {
+            Files.walkFileTree(entry, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    bytes.addAndGet(attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return bytes.get();
+    }
+
+    // Najvise filesPerSecond fajlova u svakom intervalu od jedne sekunde
+    private void throttle(long[] window) {
+        if (filesPerSecond <= 0 || ++window[1] < filesPerSecond)
+            return;
+
+        long elapsedMillis = (System.nanoTime() - window[0]) / 1_000_000;
+        if (elapsedMillis < 1000) {
+            try {
+                Thread.sleep(1000 - elapsedMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        window[0] = System.nanoTime();
+        window[1] = 0;
+    }
+
+    // Stavka u redu za brisanje; pendingBytes je deo njenog zauzeca koji jos nije oslobodjen
+    private static class Entry {
+        private final Path path;
+        private final boolean releasesStorage;
+        private long pendingBytes;
+
+        private Entry(Path path, long pendingBytes, boolean releasesStorage) {
+            this.path = path;
+            this.pendingBytes = pendingBytes;
+            this.releasesStorage = releasesStorage;
+        }
+    }
+}
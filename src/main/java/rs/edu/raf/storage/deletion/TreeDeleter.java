@@ -0,0 +1,130 @@
+package rs.edu.raf.storage.deletion;
+
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.exceptions.FileDeleteFailedException;
+import rs.edu.raf.storage.exceptions.InsufficientPrivilegesException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+// Brisanje celog stabla foldera u post-order redosledu (Files.walkFileTree): prvo sadrzaj, pa folder.
+// Privilegija za brisanje se proverava jednom po folderu, a obrisani bajtovi se sabiraju u DeleteResult
+// umesto da se zauzece azurira posle svakog fajla. Sa parallelism > 1 podfolderi prvog nivoa se brisu paralelno.
+public class TreeDeleter {
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    public TreeDeleter(int parallelism) {
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    // canDeleteIn - da li se sme brisati sadrzaj datog foldera; blobStore moze biti null
+    public DeleteResult delete(Path directory, Predicate<String> canDeleteIn, BlobStore blobStore) {
+        DeleteResult result = new DeleteResult();
+        if (pool == null) {
+            walk(directory, canDeleteIn, blobStore, result);
+            return result;
+        }
+
+        if (!canDeleteIn.test(directory.toString())) {
+            result.failed(new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije."));
+            return result;
+        }
+
+        // Fajlovi prvog nivoa se brisu odmah, a svaki podfolder u posebnom zadatku
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        File[] children = directory.toFile().listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory() && !Files.isSymbolicLink(child.toPath()))
+                    tasks.add(pool.submit(() -> walk(child.toPath(), canDeleteIn, blobStore, result)));
+                else
+                    deleteFile(child.toPath(), blobStore, result);
+            }
+        }
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+
+        if (result.isComplete())
+            deleteDirectory(directory, result);
+        return result;
+    }
+
+    private void walk(Path directory, Predicate<String> canDeleteIn, BlobStore blobStore, DeleteResult result) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!canDeleteIn.test(dir.toString())) {
+                        result.failed(new InsufficientPrivilegesException("Greska! Folder nema potrebne privilegije."));
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    deleteFile(file, blobStore, result);
+                    return result.isComplete() ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    exc.printStackTrace();
+                    result.failed(new FileDeleteFailedException());
+                    return FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    deleteDirectory(dir, result);
+                    return result.isComplete() ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            result.failed(new FileDeleteFailedException());
+        }
+    }
+
+    private static void deleteFile(Path file, BlobStore blobStore, DeleteResult result) {
+        try {
+            long size = Files.size(file);
+            long freed = blobStore != null ? blobStore.remove(file) : size;
+            if (blobStore == null)
+                Files.delete(file);
+            result.fileDeleted(size, freed);
+        } catch (IOException e) {
+            e.printStackTrace();
+            result.failed(new FileDeleteFailedException());
+        }
+    }
+
+    private static void deleteDirectory(Path directory, DeleteResult result) {
+        try {
+            Files.delete(directory);
+            result.directoryDeleted();
+        } catch (IOException e) {
+            e.printStackTrace();
+            result.failed(new FileDeleteFailedException());
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdown();
+    }
+}
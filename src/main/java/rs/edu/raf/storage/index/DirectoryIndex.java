@@ -0,0 +1,123 @@
+package rs.edu.raf.storage.index;
+
+import java.io.File;
+import java.util.*;
+
+// Indeks stabla direktorijuma u memoriji - kljuc je putanja foldera (onakva kakvu vraca File.getPath()),
+// a vrednost su fajlovi i folderi koje sadrzi, u redosledu u kojem ih je vratio listFiles()
+public class DirectoryIndex {
+
+    private final String rootDirectory;
+    private final Map<String, Map<String, IndexedFile>> directories = new HashMap<>();
+
+    private DirectoryIndex(String rootDirectory) {
+        this.rootDirectory = new File(rootDirectory).getPath();
+    }
+
+    public static DirectoryIndex build(String rootDirectory) {
+        DirectoryIndex index = new DirectoryIndex(rootDirectory);
+        index.scan(new File(index.rootDirectory));
+        return index;
+    }
+
+    public synchronized boolean containsDirectory(String path) {
+        return directories.containsKey(new File(path).getPath());
+    }
+
+    public synchronized boolean contains(String path) {
+        File file = new File(path);
+        if (directories.containsKey(file.getPath()))
+            return true;
+        Map<String, IndexedFile> children = directories.get(file.getParent());
+        return children != null && children.containsKey(file.getName());
+    }
+
+    public synchronized File getFile(String path) {
+        File file = new File(path);
+        Map<String, IndexedFile> children = directories.get(file.getParent());
+        return children == null ? null : children.get(file.getName());
+    }
+
+    // Vraca sadrzaj foldera, ili null ako folder nije u indeksu
+    public synchronized List<File> getFileList(String path) {
+        Map<String, IndexedFile> children = directories.get(new File(path).getPath());
+        if (children == null)
+            return null;
+        return new ArrayList<>(children.values());
+    }
+
+    // Ponovno citanje foldera i celog njegovog podstabla sa diska
+    public synchronized void rescan(String path) {
+        removeSubtree(new File(path).getPath());
+        refresh(path);
+    }
+
+    // Usaglasava indeks sa stanjem na disku za prosledjenu putanju - poziva se posle svake operacije koja menja skladiste
+    public synchronized void refresh(String path) {
+        File file = new File(path);
+        String key = file.getPath();
+
+        if (key.equals(rootDirectory)) {
+            if (!directories.containsKey(key))
+                scan(file);
+            return;
+        }
+
+        if (!key.startsWith(rootDirectory + File.separator))
+            return;
+
+        if (!file.exists()) {
+            Map<String, IndexedFile> children = directories.get(file.getParent());
+            if (children != null)
+                children.remove(file.getName());
+            removeSubtree(key);
+            return;
+        }
+
+        // Ako roditelj jos nije indeksiran (npr. napravljen je preko Files.createDirectories), indeksiraj i njega
+        if (!directories.containsKey(file.getParent())) {
+            refresh(file.getParent());
+            if (directories.containsKey(key) || !file.isDirectory())
+                return;
+        }
+
+        IndexedFile indexed = IndexedFile.read(file);
+        if (indexed == null)
+            return;
+        directories.get(file.getParent()).put(file.getName(), indexed);
+        if (indexed.isDirectory() && !directories.containsKey(key))
+            scan(file);
+    }
+
+    private void scan(File directory) {
+        Map<String, IndexedFile> children = new LinkedHashMap<>();
+        directories.put(directory.getPath(), children);
+
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        for (File f : files) {
+            IndexedFile indexed = IndexedFile.read(f);
+            if (indexed == null)
+                continue;
+            children.put(f.getName(), indexed);
+            if (indexed.isDirectory())
+                scan(f);
+        }
+    }
+
+    private void removeSubtree(String key) {
+        Map<String, IndexedFile> children = directories.remove(key);
+        if (children == null)
+            return;
+        for (IndexedFile f : children.values()) {
+            if (f.isDirectory())
+                removeSubtree(f.getPath());
+        }
+    }
+
+    public String getRootDirectory() {
+        return rootDirectory;
+    }
+}
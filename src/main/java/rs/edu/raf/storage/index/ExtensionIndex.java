@@ -0,0 +1,223 @@
+package rs.edu.raf.storage.index;
+
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+// Indeks fajlova po ekstenziji (deo imena posle poslednje tacke) za FILTER_EXTENSION. Za svaku ekstenziju fajlovi su
+// podeljeni po folderu (sortirano po putanji), pa se podstablo dobija jednim opsegom i obilazi samo ono sto odgovara.
+// Argument koji sadrzi tacku (npr. ".pdf" ili ".tar.gz") se odgovara iz indeksa: ime koje se zavrsava argumentom
+// mora imati istu ekstenziju kao i argument, pa se kandidati samo proveravaju sa endsWith.
+public class ExtensionIndex {
+
+    private final String rootDirectory;
+    // ekstenzija -> folder -> ime fajla -> velicina
+    private final Map<String, TreeMap<String, Map<String, Long>>> extensions = new HashMap<>();
+    private final Map<String, ExtensionStats> totals = new HashMap<>();
+    private final TreeSet<String> directories = new TreeSet<>();
+
+    private ExtensionIndex(String rootDirectory) {
+        this.rootDirectory = new File(rootDirectory).getPath();
+    }
+
+    public static ExtensionIndex build(String rootDirectory) {
+        ExtensionIndex index = new ExtensionIndex(rootDirectory);
+        index.scan(Paths.get(index.rootDirectory));
+        return index;
+    }
+
+    // Da li se argument FILTER_EXTENSION-a moze odgovoriti iz indeksa
+    public static boolean supports(String argument) {
+        return argument != null && argument.indexOf('.') >= 0;
+    }
+
+    // Putanje fajlova u folderu directory (i podfolderima ako je recursive) cije se ime zavrsava argumentom
+    public synchronized List<String> search(String directory, String argument, boolean recursive) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Long>> folder : folders(directory, extensionOf(argument), recursive)) {
+            for (String name : folder.getValue().keySet()) {
+                if (name.endsWith(argument))
+                    result.add(folder.getKey() + File.separator + name);
+            }
+        }
+        return result;
+    }
+
+    // Broj i ukupna velicina fajlova sa ekstenzijom u folderu (i podfolderima ako je recursive).
+    // Fajlovi se cuvaju po delu imena posle poslednje tacke, pa se za ekstenziju sa vise tacaka (".tar.gz")
+    // gledaju fajlovi sa ".gz" i broje samo oni cije se ime zavrsava celom ekstenzijom
+    public synchronized ExtensionStats getStats(String directory, String extension, boolean recursive) {
+        String suffix = extension.startsWith(".") ? extension : "." + extension;
+        String key = extensionOf(suffix);
+        if (recursive && suffix.equals("." + key) && new File(directory).getPath().equals(rootDirectory)) {
+            ExtensionStats total = totals.get(key);
+            return total == null ? new ExtensionStats() : new ExtensionStats(total.getCount(), total.getBytes());
+        }
+
+        ExtensionStats stats = new ExtensionStats();
+        for (Map.Entry<String, Map<String, Long>> folder : folders(directory, key, recursive)) {
+            for (Map.Entry<String, Long> file : folder.getValue().entrySet()) {
+                if (file.getKey().endsWith(suffix))
+                    stats.add(1, file.getValue());
+            }
+        }
+        return stats;
+    }
+
+    // Sve ekstenzije u skladistu sa brojem i velicinom fajlova
+    public synchronized Map<String, ExtensionStats> getTotals() {
+        Map<String, ExtensionStats> copy = new TreeMap<>();
+        totals.forEach((extension, stats) -> copy.put(extension, new ExtensionStats(stats.getCount(), stats.getBytes())));
+        return copy;
+    }
+
+    // Usaglasavanje sa diskom za prosledjenu putanju - poziva se posle svake operacije koja menja skladiste
+    public synchronized void refresh(String path) {
+        File file = new File(path);
+        String key = file.getPath();
+        if (!key.startsWith(rootDirectory + File.separator) || isInternal(key))
+            return;
+
+        if (file.isFile()) {
+            // Fajl je mozda prepisan, pa se velicina uvek cita ponovo
+            remove(file.getParent(), file.getName());
+            add(file.getParent(), file.getName(), file.length());
+        } else if (file.isDirectory()) {
+            if (!directories.contains(key))
+                scan(file.toPath());
+        } else {
+            removeSubtree(key);
+        }
+    }
+
+    // Ponovno citanje foldera i celog podstabla sa diska (npr. posle delimicnog brisanja)
+    public synchronized void rescan(String path) {
+        String key = new File(path).getPath();
+        removeSubtree(key);
+        refresh(key);
+    }
+
+    public String getRootDirectory() {
+        return rootDirectory;
+    }
+
+    private Collection<Map.Entry<String, Map<String, Long>>> folders(String directory, String extension, boolean recursive) {
+        TreeMap<String, Map<String, Long>> byFolder = extensions.get(extension);
+        if (byFolder == null)
+            return Collections.emptyList();
+
+        String key = new File(directory).getPath();
+        if (!recursive) {
+            Map<String, Long> files = byFolder.get(key);
+            return files == null ? Collections.emptyList() : Collections.singletonList(new AbstractMap.SimpleEntry<>(key, files));
+        }
+
+        List<Map.Entry<String, Map<String, Long>>> folders = new ArrayList<>();
+        Map<String, Long> files = byFolder.get(key);
+        if (files != null)
+            folders.add(new AbstractMap.SimpleEntry<>(key, files));
+        folders.addAll(byFolder.subMap(key + File.separator, key + File.separator + Character.MAX_VALUE).entrySet());
+        return folders;
+    }
+
+    private void scan(Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (isInternal(dir.toString()))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    directories.add(dir.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        remove(file.getParent().toString(), file.getFileName().toString());
+                        add(file.getParent().toString(), file.getFileName().toString(), attrs.size());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // .blobs i .trash folderi se ne indeksiraju
+    private boolean isInternal(String path) {
+        return BlobStore.isBlobPath(rootDirectory, path) || TrashReclaimer.isTrashPath(rootDirectory, path);
+    }
+
+    // Ekstenzija imena, null ako ime nema tacku (takav fajl se ne indeksira jer ne moze odgovarati argumentu sa tackom)
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? null : name.substring(dot + 1);
+    }
+
+    private void add(String directory, String name, long size) {
+        String extension = extensionOf(name);
+        if (extension == null)
+            return;
+        extensions.computeIfAbsent(extension, e -> new TreeMap<>()).computeIfAbsent(directory, d -> new HashMap<>()).put(name, size);
+        totals.computeIfAbsent(extension, e -> new ExtensionStats()).add(1, size);
+    }
+
+    private void remove(String directory, String name) {
+        String extension = extensionOf(name);
+        if (extension == null)
+            return;
+        TreeMap<String, Map<String, Long>> byFolder = extensions.get(extension);
+        Map<String, Long> files = byFolder == null ? null : byFolder.get(directory);
+        Long size = files == null ? null : files.remove(name);
+        if (size == null)
+            return;
+        if (files.isEmpty())
+            byFolder.remove(directory);
+        removeFromTotals(extension, 1, size);
+    }
+
+    private void removeSubtree(String key) {
+        File file = new File(key);
+        remove(file.getParent(), file.getName());
+
+        for (Iterator<Map.Entry<String, TreeMap<String, Map<String, Long>>>> iterator = extensions.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, TreeMap<String, Map<String, Long>>> extension = iterator.next();
+            SortedMap<String, Map<String, Long>> subtree = extension.getValue().subMap(key, key + File.separator + Character.MAX_VALUE);
+            for (Iterator<Map.Entry<String, Map<String, Long>>> folders = subtree.entrySet().iterator(); folders.hasNext(); ) {
+                Map.Entry<String, Map<String, Long>> folder = folders.next();
+                if (!folder.getKey().equals(key) && !folder.getKey().startsWith(key + File.separator))
+                    continue;
+                long bytes = 0;
+                for (long size : folder.getValue().values())
+                    bytes += size;
+                removeFromTotals(extension.getKey(), folder.getValue().size(), bytes);
+                folders.remove();
+            }
+            if (extension.getValue().isEmpty())
+                iterator.remove();
+        }
+        directories.remove(key);
+        directories.subSet(key + File.separator, key + File.separator + Character.MAX_VALUE).clear();
+    }
+
+    private void removeFromTotals(String extension, long count, long bytes) {
+        ExtensionStats total = totals.get(extension);
+        if (total == null)
+            return;
+        total.add(-count, -bytes);
+        if (total.getCount() <= 0)
+            totals.remove(extension);
+    }
+}
@@ -0,0 +1,38 @@
+package rs.edu.raf.storage.index;
+
+// Broj i ukupna velicina fajlova sa jednom ekstenzijom
+public class ExtensionStats {
+
+    private long count;
+    private long bytes;
+
+    public ExtensionStats() {
+
+    }
+
+    public ExtensionStats(long count, long bytes) {
+        this.count = count;
+        this.bytes = bytes;
+    }
+
+    void add(long count, long bytes) {
+        this.count += count;
+        this.bytes += bytes;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtensionStats{" +
+                "count=" + count +
+                ", bytes=" + bytes +
+                '}';
+    }
+}
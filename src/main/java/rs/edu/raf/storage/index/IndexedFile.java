@@ -0,0 +1,57 @@
+package rs.edu.raf.storage.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+// File cije su osobine procitane jednom (jedan readAttributes poziv), pa isFile(), length() i slicni pozivi ne idu na disk
+public class IndexedFile extends File {
+
+    private final boolean directory;
+    private final long length;
+    private final long lastModified;
+
+    public IndexedFile(File file, BasicFileAttributes attributes) {
+        super(file.getPath());
+        this.directory = attributes.isDirectory();
+        this.length = attributes.size();
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+    }
+
+    // Citanje atributa sa diska, null ako fajl vise ne postoji
+    public static IndexedFile read(File file) {
+        if (file instanceof IndexedFile)
+            return (IndexedFile) file;
+        try {
+            return new IndexedFile(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isFile() {
+        return !directory;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,366 @@
+package rs.edu.raf.storage.index;
+
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+// Trigram indeks imena fajlova za FILTER_FILENAME: za svaku trojku uzastopnih znakova imena cuva se sortirana lista
+// id-jeva fajlova koji je sadrze. Upit duzine >= 3 se odgovara presekom lista za trojke iz upita, a kandidati se
+// na kraju proveravaju sa getName().contains(query), pa je rezultat isti kao kod obilaska.
+// Indeks se upisuje u INDEX_FILE pri zatvaranju skladista i cita pri sledecem pokretanju; procitan fajl se odmah
+// brise, pa se posle pada programa (kada indeks na disku vise ne odgovara skladistu) indeks pravi ponovo skeniranjem.
+// Uz svaki folder se cuva i vreme izmene, pa se folderi promenjeni dok skladiste nije bilo otvoreno ponovo citaju.
+public class NameIndex {
+
+    public static final String INDEX_FILE = "names.idx";
+    public static final int GRAM = 3;
+    private static final int FORMAT_VERSION = 2;
+    // Izmena u istom intervalu u kome je indeks upisan ne mora da promeni vreme izmene foldera (gruba rezolucija vremena)
+    private static final long STAMP_GRANULARITY_MILLIS = 2000;
+
+    private final String rootDirectory;
+    // id -> putanja fajla (null za uklonjen fajl); id-jevi rastu, pa se liste dopunjuju na kraj i ostaju sortirane
+    private final List<String> paths = new ArrayList<>();
+    private final TreeMap<String, Integer> ids = new TreeMap<>();
+    private final TreeSet<String> directories = new TreeSet<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private int removed = 0;
+
+    private NameIndex(String rootDirectory) {
+        this.rootDirectory = new File(rootDirectory).getPath();
+    }
+
+    // Citanje indeksa sacuvanog pri prethodnom zatvaranju, ili pravljenje skeniranjem ako ga nema
+    public static NameIndex open(String rootDirectory) {
+        NameIndex index = new NameIndex(rootDirectory);
+        Path indexFile = Paths.get(index.rootDirectory, INDEX_FILE);
+        if (!index.load(indexFile))
+            index.scan(Paths.get(index.rootDirectory));
+        try {
+            Files.deleteIfExists(indexFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return index;
+    }
+
+    // Putanje fajlova u folderu directory (i podfolderima ako je recursive) cije ime sadrzi query
+    public synchronized List<String> search(String directory, String query, boolean recursive) {
+        List<String> result = new ArrayList<>();
+        String key = new File(directory).getPath();
+        for (int id : candidates(query)) {
+            String path = paths.get(id);
+            if (path == null)
+                continue;
+            int separator = path.lastIndexOf(File.separatorChar);
+            boolean inDirectory = recursive ? path.startsWith(key + File.separator) : separator == key.length() && path.startsWith(key);
+            if (inDirectory && path.substring(separator + 1).contains(query))
+                result.add(path);
+        }
+        return result;
+    }
+
+    // Usaglasavanje sa diskom za prosledjenu putanju - poziva se posle svake operacije koja menja skladiste
+    public synchronized void refresh(String path) {
+        File file = new File(path);
+        String key = file.getPath();
+        if (!key.startsWith(rootDirectory + File.separator) || isInternal(key))
+            return;
+
+        if (file.isFile()) {
+            if (!ids.containsKey(key))
+                add(key);
+        } else if (file.isDirectory()) {
+            // Folder koji je vec indeksiran je azuran; novi (ili premesten) folder se skenira
+            if (!directories.contains(key))
+                scan(file.toPath());
+        } else {
+            removeSubtree(key);
+        }
+    }
+
+    // Ponovno citanje foldera i celog podstabla sa diska (npr. posle delimicnog brisanja)
+    public synchronized void rescan(String path) {
+        String key = new File(path).getPath();
+        removeSubtree(key);
+        refresh(key);
+    }
+
+    // Upis indeksa (samo putanje - liste se prave pri citanju) preko privremenog fajla
+    public synchronized void save() {
+        Path target = Paths.get(rootDirectory, INDEX_FILE);
+        Path temp = target.resolveSibling(INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(directories.size());
+            for (String directory : directories) {
+                out.writeUTF(directory.substring(rootDirectory.length()));
+                out.writeLong(new File(directory).lastModified());
+            }
+            out.writeInt(ids.size());
+            for (String path : ids.keySet())
+                out.writeUTF(path.substring(rootDirectory.length()));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    public String getRootDirectory() {
+        return rootDirectory;
+    }
+
+    private boolean load(Path indexFile) {
+        if (!Files.isRegularFile(indexFile))
+            return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != FORMAT_VERSION)
+                return false;
+            long savedAt = in.readLong();
+            Map<String, Long> stamps = new LinkedHashMap<>();
+            int directoryCount = in.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                String directory = rootDirectory + in.readUTF();
+                directories.add(directory);
+                stamps.put(directory, in.readLong());
+            }
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++)
+                add(rootDirectory + in.readUTF());
+            validate(stamps, savedAt);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            paths.clear();
+            ids.clear();
+            directories.clear();
+            postings.clear();
+            removed = 0;
+            return false;
+        }
+    }
+
+    // Folderi su u stamps sortirani (roditelj pre podfoldera); folder kome se vreme izmene promenilo,
+    // ili je preblizu vremenu upisa da bi poredjenje bilo pouzdano, se ponovo cita
+    private void validate(Map<String, Long> stamps, long savedAt) {
+        for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+            String directory = stamp.getKey();
+            // Uklonjen zajedno sa roditeljem
+            if (!directories.contains(directory))
+                continue;
+            File file = new File(directory);
+            if (!file.isDirectory()) {
+                removeSubtree(directory);
+                continue;
+            }
+            long modified = file.lastModified();
+            if (modified != stamp.getValue() || modified >= savedAt - STAMP_GRANULARITY_MILLIS)
+                rescanChildren(file);
+        }
+    }
+
+    // Usaglasavanje neposrednog sadrzaja foldera: novi fajlovi se dodaju, novi podfolderi skeniraju, a nestale stavke uklanjaju
+    private void rescanChildren(File directory) {
+        String key = directory.getPath();
+        Set<String> present = new HashSet<>();
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                String childKey = child.getPath();
+                if (isInternal(childKey))
+                    continue;
+                present.add(childKey);
+                if (child.isDirectory()) {
+                    if (ids.containsKey(childKey))
+                        removeSubtree(childKey);
+                    if (!directories.contains(childKey))
+                        scan(child.toPath());
+                } else if (child.isFile()) {
+                    if (directories.contains(childKey))
+                        removeSubtree(childKey);
+                    if (!ids.containsKey(childKey))
+                        add(childKey);
+                }
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String path : ids.subMap(key + File.separator, key + File.separator + Character.MAX_VALUE).keySet()) {
+            if (isChild(key, path) && !present.contains(path))
+                missing.add(path);
+        }
+        for (String path : directories.subSet(key + File.separator, key + File.separator + Character.MAX_VALUE)) {
+            if (isChild(key, path) && !present.contains(path))
+                missing.add(path);
+        }
+        for (String path : missing)
+            removeSubtree(path);
+    }
+
+    private static boolean isChild(String directory, String path) {
+        return path.indexOf(File.separatorChar, directory.length() + 1) < 0;
+    }
+
+    private void scan(Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (isInternal(dir.toString()))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    directories.add(dir.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String key = file.toString();
+                    if (attrs.isRegularFile() && !isInternal(key) && !ids.containsKey(key))
+                        add(key);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // .blobs i .trash folderi i sam fajl indeksa se ne indeksiraju
+    private boolean isInternal(String path) {
+        if (BlobStore.isBlobPath(rootDirectory, path) || TrashReclaimer.isTrashPath(rootDirectory, path))
+            return true;
+        String name = new File(path).getName();
+        return name.equals(INDEX_FILE) || name.equals(INDEX_FILE + ".tmp");
+    }
+
+    private void add(String path) {
+        int id = paths.size();
+        paths.add(path);
+        ids.put(path, id);
+        for (long gram : grams(new File(path).getName()))
+            postings.computeIfAbsent(gram, g -> new Postings()).add(id);
+    }
+
+    private void removeSubtree(String key) {
+        Integer id = ids.remove(key);
+        if (id != null)
+            removeId(id);
+
+        SortedMap<String, Integer> subtree = ids.subMap(key + File.separator, key + File.separator + Character.MAX_VALUE);
+        for (int childId : subtree.values())
+            removeId(childId);
+        subtree.clear();
+        directories.remove(key);
+        directories.subSet(key + File.separator, key + File.separator + Character.MAX_VALUE).clear();
+
+        // Kada je vise od pola id-jeva uklonjeno, liste se prave ponovo samo od postojecih fajlova
+        if (removed > 1024 && removed > ids.size())
+            compact();
+    }
+
+    // Id ostaje u listama dok se indeks ne sazme - search() ga preskace jer je putanja null
+    private void removeId(int id) {
+        paths.set(id, null);
+        removed++;
+    }
+
+    private void compact() {
+        List<String> live = new ArrayList<>(ids.keySet());
+        paths.clear();
+        ids.clear();
+        postings.clear();
+        removed = 0;
+        for (String path : live)
+            add(path);
+    }
+
+    // Presek lista za sve trojke iz upita, od najkrace; za upit kraci od GRAM vraca sve id-jeve
+    private int[] candidates(String query) {
+        Set<Long> queryGrams = grams(query);
+        if (queryGrams.isEmpty()) {
+            int[] all = new int[paths.size()];
+            for (int i = 0; i < all.length; i++)
+                all[i] = i;
+            return all;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (long gram : queryGrams) {
+            Postings list = postings.get(gram);
+            if (list == null)
+                return new int[0];
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++)
+            size = intersect(result, size, lists.get(i));
+        return Arrays.copyOf(result, size);
+    }
+
+    // Presek sortiranog niza (prvih size elemenata) sa listom, upisuje se u isti niz
+    private static int intersect(int[] result, int size, Postings list) {
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < list.size; i++) {
+            int id = result[i];
+            j = list.lowerBound(id, j);
+            if (j < list.size && list.ids[j] == id)
+                result[count++] = id;
+        }
+        return count;
+    }
+
+    private static Set<Long> grams(String name) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= name.length(); i++)
+            grams.add(((long) name.charAt(i) << 32) | ((long) name.charAt(i + 1) << 16) | name.charAt(i + 2));
+        return grams;
+    }
+
+    // Sortirana lista id-jeva za jednu trojku
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        void add(int id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        // Prvi indeks >= from na kome je id >= target (galopiranje pa binarna pretraga)
+        int lowerBound(int target, int from) {
+            int step = 1;
+            int high = from;
+            while (high < size && ids[high] < target) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(ids, from, Math.min(high + 1, size), target);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package rs.edu.raf.storage.listing;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Lenji obilazak stabla preko DirectoryStream-a, istim redosledom kao Files.walk (folder, pa odmah njegov sadrzaj).
+// U memoriji su samo otvoreni DirectoryStream-ovi od pocetnog do trenutnog foldera.
+// Preskoceni folderi (interni .blobs i .trash) se ne vracaju i u njih se ne ulazi, a folder koji nestane
+// tokom obilaska (npr. istovremeno brisanje) se preskace umesto da prekine obilazak.
+public class DirectoryTreeIterator implements Iterator<Path>, AutoCloseable {
+
+    private final Set<Path> skipped;
+    private final Deque<Level> levels = new ArrayDeque<>();
+    private Path next;
+
+    public DirectoryTreeIterator(Path start, Collection<Path> skippedDirectories) throws IOException {
+        this.skipped = new HashSet<>(skippedDirectories);
+        levels.push(new Level(Files.newDirectoryStream(start)));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !levels.isEmpty()) {
+            Level level = levels.peek();
+            Path path;
+            try {
+                if (!level.entries.hasNext()) {
+                    levels.pop().close();
+                    continue;
+                }
+                path = level.entries.next();
+            } catch (DirectoryIteratorException e) {
+                levels.pop().close();
+                continue;
+            }
+            if (skipped.contains(path))
+                continue;
+
+            next = path;
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    levels.push(new Level(Files.newDirectoryStream(path)));
+                } catch (IOException e) {
+                    // Folder je obrisan izmedju citanja i otvaranja - vraca se, ali bez sadrzaja
+                }
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Path path = next;
+        next = null;
+        return path;
+    }
+
+    @Override
+    public void close() {
+        while (!levels.isEmpty())
+            levels.pop().close();
+    }
+
+    private static class Level {
+        private final DirectoryStream<Path> stream;
+        private final Iterator<Path> entries;
+
+        private Level(DirectoryStream<Path> stream) {
+            this.stream = stream;
+            this.entries = stream.iterator();
+        }
+
+        private void close() {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
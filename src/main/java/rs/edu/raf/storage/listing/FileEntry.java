@@ -0,0 +1,109 @@
+package rs.edu.raf.storage.listing;
+
+import rs.edu.raf.storage.index.IndexedFile;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Objects;
+
+// Jedna stavka listanja - pravi se jednom tokom obilaska, a string za ispis se pravi tek na izlazu iz list()
+public class FileEntry {
+
+    private final String name;
+    private final String path;
+    private final String relativePath;
+    private final long size;
+    private final long lastModified;
+    private final boolean directory;
+
+    public FileEntry(String name, String path, String relativePath, long size, long lastModified, boolean directory) {
+        this.name = name;
+        this.path = path;
+        this.relativePath = relativePath;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.directory = directory;
+    }
+
+    // Pravljenje stavke od File objekta; atributi se citaju najvise jednom (IndexedFile ih vec ima), null ako fajl ne postoji
+    public static FileEntry of(File file, String rootDirectory) {
+        IndexedFile indexed = IndexedFile.read(file);
+        if (indexed == null)
+            return null;
+
+        String path = indexed.getPath();
+        String rootPath = new File(rootDirectory).getPath();
+        String relativePath = path.startsWith(rootPath + File.separator) ? path.substring(rootPath.length() + 1).replace("\\", "/") : "";
+
+        return new FileEntry(indexed.getName(), path, relativePath, indexed.length(), indexed.lastModified(), indexed.isDirectory());
+    }
+
+    // Ista stavka sa drugom velicinom (npr. zbirna velicina foldera)
+    public FileEntry withSize(long size) {
+        return new FileEntry(name, path, relativePath, size, lastModified, directory);
+    }
+
+    // Ista stavka sa drugim datumom izmene (npr. logicki datum fajla koji deli blob)
+    public FileEntry withLastModified(long lastModified) {
+        return new FileEntry(name, path, relativePath, size, lastModified, directory);
+    }
+
+    // Format koji vraca list()
+    public String toListingString() {
+        return name + " --- " + path + " --- " + size / 1024 + " KB" + " --- " + (directory ? "DIR" : "FILE");
+    }
+
+    // Format koji vraca list() kod sortiranja po datumu izmene
+    public String toListingString(SimpleDateFormat dateFormat) {
+        return toListingString() + " --- " + dateFormat.format(lastModified);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getRelativePath() {
+        return relativePath;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FileEntry fileEntry = (FileEntry) o;
+        return size == fileEntry.size && lastModified == fileEntry.lastModified && directory == fileEntry.directory && path.equals(fileEntry.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, size, lastModified, directory);
+    }
+
+    @Override
+    public String toString() {
+        return "FileEntry{" +
+                "name='" + name + '\'' +
+                ", path='" + path + '\'' +
+                ", relativePath='" + relativePath + '\'' +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                ", directory=" + directory +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+package rs.edu.raf.storage.listing;
+
+import java.util.List;
+
+// Jedna strana listanja; continuationToken se prosledjuje sledecem pozivu listPage(), null znaci da nema vise stavki
+public class ListingPage {
+
+    private final List<String> entries;
+    private final String continuationToken;
+
+    public ListingPage(List<String> entries, String continuationToken) {
+        this.entries = entries;
+        this.continuationToken = continuationToken;
+    }
+
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ListingPage{" +
+                "entries=" + entries +
+                ", continuationToken='" + continuationToken + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,83 @@
+package rs.edu.raf.storage.listing;
+
+import rs.edu.raf.storage.index.IndexedFile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Paralelni obilazak stabla direktorijuma preko ForkJoinPool-a.
+// Svaki podfolder se obilazi u posebnom zadatku, a rezultati se spajaju u istom redosledu
+// kao kod sekvencijalnog obilaska (fajl/folder, pa odmah iza foldera njegov sadrzaj).
+// Preskoceni folderi (interni .blobs i .trash) se ne vracaju i u njih se ne ulazi.
+public class ParallelDirectoryWalker {
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    public ParallelDirectoryWalker(int parallelism) {
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public List<File> walk(String path, String... skippedDirectories) {
+        Set<String> skipped = new HashSet<>();
+        for (String directory : skippedDirectories)
+            skipped.add(new File(directory).getPath());
+        return pool.invoke(new WalkTask(new File(path), skipped));
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static class WalkTask extends RecursiveTask<List<File>> {
+
+        private final File directory;
+        private final Set<String> skipped;
+
+        WalkTask(File directory, Set<String> skipped) {
+            this.directory = directory;
+            this.skipped = skipped;
+        }
+
+        @Override
+        protected List<File> compute() {
+            File[] files = directory.listFiles();
+            if (files == null)
+                return new ArrayList<>();
+
+            IndexedFile[] entries = new IndexedFile[files.length];
+            WalkTask[] subtasks = new WalkTask[files.length];
+
+            for (int i = 0; i < files.length; i++) {
+                if (skipped.contains(files[i].getPath()))
+                    continue;
+                entries[i] = IndexedFile.read(files[i]);
+                if (entries[i] != null && entries[i].isDirectory()) {
+                    subtasks[i] = new WalkTask(files[i], skipped);
+                    subtasks[i].fork();
+                }
+            }
+
+            List<File> result = new ArrayList<>();
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] == null)
+                    continue;
+                result.add(entries[i]);
+                if (subtasks[i] != null)
+                    result.addAll(subtasks[i].join());
+            }
+            return result;
+        }
+    }
+}
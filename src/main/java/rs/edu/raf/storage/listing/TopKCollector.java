@@ -0,0 +1,58 @@
+package rs.edu.raf.storage.listing;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Cuva samo prvih limit stavki po datom komparatoru (ogranicen heap), bez sortiranja celog stabla.
+// Kod jednakih stavki prednost ima ona koja je ranije dodata, kao kod stabilnog sortiranja cele liste.
+public class TopKCollector implements Consumer<FileEntry> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int limit;
+    private final Comparator<Ranked> order;
+    private final PriorityQueue<Ranked> heap;
+    private long sequence = 0;
+
+    public TopKCollector(Comparator<FileEntry> comparator, int limit) {
+        this.limit = limit;
+        this.order = Comparator.<Ranked, FileEntry>comparing(r -> r.entry, comparator).thenComparingLong(r -> r.sequence);
+        // Na vrhu heap-a je "najgora" zadrzana stavka, da bi se lako izbacila.
+        // Pocetni kapacitet je ogranicen jer limit moze biti ogroman (npr. Integer.MAX_VALUE), a heap ionako raste po potrebi.
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(limit, INITIAL_CAPACITY)), order.reversed());
+    }
+
+    @Override
+    public void accept(FileEntry entry) {
+        if (limit <= 0)
+            return;
+
+        Ranked ranked = new Ranked(entry, sequence++);
+        if (heap.size() < limit) {
+            heap.add(ranked);
+        } else if (order.compare(ranked, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(ranked);
+        }
+    }
+
+    public List<FileEntry> toSortedList() {
+        List<Ranked> ranked = new ArrayList<>(heap);
+        ranked.sort(order);
+
+        List<FileEntry> entries = new ArrayList<>(ranked.size());
+        for (Ranked r : ranked)
+            entries.add(r.entry);
+        return entries;
+    }
+
+    private static class Ranked {
+        private final FileEntry entry;
+        private final long sequence;
+
+        Ranked(FileEntry entry, long sequence) {
+            this.entry = entry;
+            this.sequence = sequence;
+        }
+    }
+}
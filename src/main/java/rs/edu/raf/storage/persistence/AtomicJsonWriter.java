@@ -0,0 +1,49 @@
+package rs.edu.raf.storage.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Upis JSON-a preko privremenog fajla i atomskog preimenovanja, da se config.json/users.json nikad ne procitaju napola upisani.
+// Privremeni fajl se pre preimenovanja sinhronizuje sa diskom (fsync), pa je posle povratka upis trajan i posle pada sistema.
+public class AtomicJsonWriter {
+
+    private AtomicJsonWriter() {
+
+    }
+
+    public static void write(ObjectMapper mapper, String path, Object value) throws IOException {
+        Path target = Paths.get(path);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        ByteBuffer content = ByteBuffer.wrap(mapper.writeValueAsBytes(value));
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining())
+                channel.write(content);
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    // Sinhronizacija foldera da bi i samo preimenovanje bilo trajno; nije podrzano na svim sistemima (npr. Windows), pa se greska ignorise
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // folder ne moze da se otvori kao kanal - preimenovanje je i dalje atomsko
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package rs.edu.raf.storage.persistence;
+
+import rs.edu.raf.storage.StorageModel;
+import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.user_management.User;
+
+import java.util.Set;
+
+// Jedan zapis u zurnalu operacija - opisuje samo promenu, ne celo stanje skladista
+public class JournalRecord {
+
+    public enum Type {
+        STORAGE_SIZE_CHANGE,
+        STORAGE_SIZE_LIMIT,
+        FILE_LIMIT,
+        RESTRICTED_EXTENSION,
+        USER_ADDED,
+        USER_REMOVED,
+        FOLDER_PRIVILEGES
+    }
+
+    private long sequence;
+    private Type type;
+    private long value;
+    private String path;
+    private String extension;
+    private String username;
+    private User user;
+    private Set<Privileges> privileges;
+
+    public JournalRecord() {
+
+    }
+
+    private JournalRecord(Type type) {
+        this.type = type;
+    }
+
+    public static JournalRecord storageSizeChange(long delta) {
+        JournalRecord record = new JournalRecord(Type.STORAGE_SIZE_CHANGE);
+        record.value = delta;
+        return record;
+    }
+
+    public static JournalRecord storageSizeLimit(long limit) {
+        JournalRecord record = new JournalRecord(Type.STORAGE_SIZE_LIMIT);
+        record.value = limit;
+        return record;
+    }
+
+    public static JournalRecord fileLimit(String path, int numberOfFiles) {
+        JournalRecord record = new JournalRecord(Type.FILE_LIMIT);
+        record.path = path;
+        record.value = numberOfFiles;
+        return record;
+    }
+
+    public static JournalRecord restrictedExtension(String extension) {
+        JournalRecord record = new JournalRecord(Type.RESTRICTED_EXTENSION);
+        record.extension = extension;
+        return record;
+    }
+
+    public static JournalRecord userAdded(User user) {
+        JournalRecord record = new JournalRecord(Type.USER_ADDED);
+        record.user = user;
+        return record;
+    }
+
+    public static JournalRecord userRemoved(String username) {
+        JournalRecord record = new JournalRecord(Type.USER_REMOVED);
+        record.username = username;
+        return record;
+    }
+
+    public static JournalRecord folderPrivileges(String username, String path, Set<Privileges> privileges) {
+        JournalRecord record = new JournalRecord(Type.FOLDER_PRIVILEGES);
+        record.username = username;
+        record.path = path;
+        record.privileges = privileges;
+        return record;
+    }
+
+    // Da li zapis menja korisnike (tada se pri sinhronom upisu menja i users.json)
+    public boolean changesUsers() {
+        return type == Type.USER_ADDED || type == Type.USER_REMOVED || type == Type.FOLDER_PRIVILEGES;
+    }
+
+    // Ponavljanje promene nad modelom procitanim iz snapshot-a (config.json)
+    public void applyTo(StorageModel storageModel) {
+        switch (type) {
+            case STORAGE_SIZE_CHANGE:
+                storageModel.setCurrentStorageSize(storageModel.getCurrentStorageSize() + value);
+                break;
+            case STORAGE_SIZE_LIMIT:
+                storageModel.setStorageSizeLimit(value);
+                storageModel.setStorageSizeLimitSet(true);
+                break;
+            case FILE_LIMIT:
+                storageModel.getMaxNumberOfFilesInDirectory().put(path, (int) value);
+                storageModel.setMaxNumberOfFilesInDirectorySet(true);
+                break;
+            case RESTRICTED_EXTENSION:
+                storageModel.getUnsupportedExtensions().add(extension);
+                break;
+            case USER_ADDED:
+                storageModel.getUserList().add(user);
+                break;
+            case USER_REMOVED:
+                storageModel.getUserList().removeIf(u -> u.getUsername().equalsIgnoreCase(username));
+                break;
+            case FOLDER_PRIVILEGES:
+                for (User u : storageModel.getUserList()) {
+                    if (u.getUsername().equalsIgnoreCase(username))
+                        storageModel.setFolderPrivileges(u, path, privileges);
+                }
+                break;
+        }
+        storageModel.invalidateAdmissionPolicy();
+        storageModel.invalidatePrivilegeResolvers();
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public void setValue(long value) {
+        this.value = value;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public void setExtension(String extension) {
+        this.extension = extension;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Set<Privileges> getPrivileges() {
+        return privileges;
+    }
+
+    public void setPrivileges(Set<Privileges> privileges) {
+        this.privileges = privileges;
+    }
+}
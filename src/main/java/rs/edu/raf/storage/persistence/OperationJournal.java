@@ -0,0 +1,91 @@
+package rs.edu.raf.storage.persistence;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import rs.edu.raf.storage.StorageModel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Zurnal operacija nad skladistem: svaka promena konfiguracije/korisnika se dopisuje kao jedan JSON red u journal.log.
+// config.json i users.json su snapshot; config.json pamti redni broj poslednjeg zapisa koji sadrzi (journalSequence),
+// pa se pri otvaranju ponavljaju samo noviji zapisi.
+public class OperationJournal {
+
+    public static final String JOURNAL_FILE = "journal.log";
+
+    private final Path journalPath;
+    private final ObjectMapper mapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private BufferedWriter writer;
+    private int recordCount = 0;
+
+    public OperationJournal(String rootDirectory) {
+        this.journalPath = Paths.get(rootDirectory, JOURNAL_FILE);
+    }
+
+    public static boolean exists(String rootDirectory) {
+        return Files.exists(Paths.get(rootDirectory, JOURNAL_FILE));
+    }
+
+    public void append(JournalRecord record) throws IOException {
+        if (writer == null)
+            writer = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        writer.write(mapper.writeValueAsString(record));
+        writer.newLine();
+        writer.flush();
+        recordCount++;
+    }
+
+    // Brisanje zapisa - poziva se tek posto je snapshot upisan
+    public void truncate() throws IOException {
+        close();
+        Files.deleteIfExists(journalPath);
+        recordCount = 0;
+    }
+
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    // Ponavljanje zapisa novijih od snapshot-a nad modelom procitanim iz config.json
+    public static void replay(String rootDirectory, StorageModel storageModel) throws IOException {
+        Path journalPath = Paths.get(rootDirectory, JOURNAL_FILE);
+        if (!Files.exists(journalPath))
+            return;
+
+        ObjectMapper mapper = new ObjectMapper();
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+
+                JournalRecord record;
+                try {
+                    record = mapper.readValue(line, JournalRecord.class);
+                } catch (IOException e) {
+                    // Nedovrsen poslednji red (pad tokom upisa) se preskace
+                    break;
+                }
+
+                if (record.getSequence() > storageModel.getJournalSequence()) {
+                    record.applyTo(storageModel);
+                    storageModel.setJournalSequence(record.getSequence());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package rs.edu.raf.storage.query;
+
+import rs.edu.raf.storage.comparator.FileEntryModifiedDateComparator;
+import rs.edu.raf.storage.comparator.FileEntryNameComparator;
+import rs.edu.raf.storage.comparator.FileEntryPathComparator;
+import rs.edu.raf.storage.comparator.FileEntrySizeComparator;
+import rs.edu.raf.storage.listing.FileEntry;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Upit nad skladistem koji kombinuje vise uslova, sortiranje i offset/limit (izvrsava ga query() u jednom obilasku).
+// Npr. PDF fajlovi u folderu reports koji u imenu imaju "q3", najnoviji prvi, prvih 50:
+// new StorageQuery("reports").type(EntryType.FILE).extension(".pdf").nameContains("q3").sortBy(SortKey.MODIFIED, true).limit(50)
+public class StorageQuery {
+
+    public enum EntryType {
+        FILE,
+        DIRECTORY,
+        ANY
+    }
+
+    public enum SortKey {
+        NAME,
+        PATH,
+        SIZE,
+        MODIFIED
+    }
+
+    private final String path;
+    private boolean recursive = true;
+    private int maxDepth = Integer.MAX_VALUE;
+    private final List<PathMatcher> excludedFolders = new ArrayList<>();
+    private EntryType type = EntryType.ANY;
+    private String extension;
+    private String nameContains;
+    private PathMatcher nameGlob;
+    private long minSize = Long.MIN_VALUE;
+    private long maxSize = Long.MAX_VALUE;
+    private long modifiedFrom = Long.MIN_VALUE;
+    private long modifiedTo = Long.MAX_VALUE;
+    private SortKey sortKey;
+    private boolean descending = false;
+    private int offset = 0;
+    private int limit = Integer.MAX_VALUE;
+
+    // path je relativan u odnosu na koren skladista ("root" za sam koren), kao kod list()
+    public StorageQuery(String path) {
+        this.path = path;
+    }
+
+    public StorageQuery recursive(boolean recursive) {
+        this.recursive = recursive;
+        return this;
+    }
+
+    // Najveca dubina obilaska (1 - samo sadrzaj foldera); dublji folderi se ne otvaraju
+    public StorageQuery maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    // Folderi cije ime odgovara glob-u (npr. "node_modules" ili ".*") se preskacu zajedno sa celim podstablom
+    public StorageQuery excludeFolders(String glob) {
+        excludedFolders.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        return this;
+    }
+
+    public StorageQuery type(EntryType type) {
+        this.type = type;
+        return this;
+    }
+
+    // Kao FILTER_EXTENSION: samo fajlovi cije se ime zavrsava sa extension
+    public StorageQuery extension(String extension) {
+        this.extension = extension;
+        return this;
+    }
+
+    // Kao FILTER_FILENAME: ime sadrzi zadati tekst
+    public StorageQuery nameContains(String nameContains) {
+        this.nameContains = nameContains;
+        return this;
+    }
+
+    // Ime odgovara glob-u (npr. "report-*.pdf")
+    public StorageQuery nameGlob(String glob) {
+        this.nameGlob = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        return this;
+    }
+
+    // Velicina u bajtovima, granice ukljucene
+    public StorageQuery sizeBetween(long minSize, long maxSize) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    // Vreme poslednje izmene u milisekundama, granice ukljucene
+    public StorageQuery modifiedBetween(long modifiedFrom, long modifiedTo) {
+        this.modifiedFrom = modifiedFrom;
+        this.modifiedTo = modifiedTo;
+        return this;
+    }
+
+    public StorageQuery sortBy(SortKey sortKey, boolean descending) {
+        this.sortKey = sortKey;
+        this.descending = descending;
+        return this;
+    }
+
+    public StorageQuery offset(int offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    public StorageQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    // Provera svih uslova nad vrednostima procitanim pri obilasku - pre nego sto se napravi FileEntry.
+    // Najjeftinije provere (tip, ime) idu prve.
+    public boolean matches(String name, boolean directory, long size, long lastModified) {
+        if (type == EntryType.FILE && directory || type == EntryType.DIRECTORY && !directory)
+            return false;
+        if (extension != null && (directory || !name.endsWith(extension)))
+            return false;
+        if (nameContains != null && !name.contains(nameContains))
+            return false;
+        if (nameGlob != null && !nameGlob.matches(Paths.get(name)))
+            return false;
+        if (size < minSize || size > maxSize)
+            return false;
+        return lastModified >= modifiedFrom && lastModified <= modifiedTo;
+    }
+
+    // Da li se u folder ulazi: dubina foldera je 1 za folder direktno u path-u
+    public boolean isDescended(String folderName, int depth) {
+        if (!recursive || depth >= maxDepth)
+            return false;
+        for (PathMatcher excluded : excludedFolders) {
+            if (excluded.matches(Paths.get(folderName)))
+                return false;
+        }
+        return true;
+    }
+
+    // Da li upit vraca samo fajlove - samo tada se mogu koristiti indeksi imena i ekstenzija, koji ne sadrze foldere
+    public boolean isFilesOnly() {
+        return type == EntryType.FILE || extension != null;
+    }
+
+    // Komparator za sortKey, null ako se ne sortira. Jednake stavke se redjaju po putanji, pa je redosled (i offset)
+    // isti bez obzira da li je upit isao preko indeksa ili obilaska.
+    public Comparator<FileEntry> getComparator() {
+        if (sortKey == null)
+            return null;
+        Comparator<FileEntry> comparator;
+        if (sortKey == SortKey.NAME)
+            comparator = new FileEntryNameComparator();
+        else if (sortKey == SortKey.PATH)
+            comparator = new FileEntryPathComparator();
+        else if (sortKey == SortKey.SIZE)
+            comparator = new FileEntrySizeComparator();
+        else
+            comparator = new FileEntryModifiedDateComparator();
+        return (descending ? comparator.reversed() : comparator).thenComparing(new FileEntryPathComparator());
+    }
+
+    // Broj stavki koje treba pronaci (offset + limit), bez prekoracenja
+    public int getWanted() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    public int getMaxDepth() {
+        return recursive ? maxDepth : 1;
+    }
+
+    public EntryType getType() {
+        return type;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getNameContains() {
+        return nameContains;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,97 @@
+package rs.edu.raf.storage.security;
+
+import rs.edu.raf.storage.enums.Privileges;
+
+import java.util.*;
+
+// Privilegije jednog korisnika po folderima, prevedene u stablo segmenata putanje.
+// Folder bez sopstvenog unosa nasledjuje privilegije najblizeg pretka koji ga ima; ako ga nema nijedan predak, nema ogranicenja.
+public class FolderPrivilegeResolver {
+
+    private final Node root = new Node();
+
+    private FolderPrivilegeResolver() {
+
+    }
+
+    public static FolderPrivilegeResolver compile(Map<String, Set<Privileges>> folderPrivileges) {
+        FolderPrivilegeResolver resolver = new FolderPrivilegeResolver();
+        if (folderPrivileges == null)
+            return resolver;
+
+        for (Map.Entry<String, Set<Privileges>> entry : folderPrivileges.entrySet()) {
+            Node node = resolver.root;
+            for (String segment : segments(entry.getKey()))
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            node.privileges = entry.getValue() == null ? Set.of() : EnumSet.copyOf(withNone(entry.getValue()));
+        }
+        return resolver;
+    }
+
+    // Privilegije koje vaze za folder (sopstvene ili nasledjene), null ako za folder nema ogranicenja
+    public Set<Privileges> resolve(String path) {
+        Node node = root;
+        Set<Privileges> nearest = root.privileges;
+
+        for (String segment : segments(path)) {
+            node = node.children.get(segment);
+            if (node == null)
+                break;
+            if (node.privileges != null)
+                nearest = node.privileges;
+        }
+        return nearest;
+    }
+
+    public boolean isAllowed(String path, Privileges privilege) {
+        Set<Privileges> privileges = resolve(path);
+        return privileges == null || privileges.contains(privilege);
+    }
+
+    // Da li privilegija vazi za folder i za sve njegove podfoldere (npr. za brisanje celog stabla jednim preimenovanjem)
+    public boolean isAllowedInSubtree(String path, Privileges privilege) {
+        if (!isAllowed(path, privilege))
+            return false;
+
+        Node node = root;
+        for (String segment : segments(path)) {
+            node = node.children.get(segment);
+            if (node == null)
+                return true;
+        }
+        return allowsInDescendants(node, privilege);
+    }
+
+    private static boolean allowsInDescendants(Node node, Privileges privilege) {
+        for (Node child : node.children.values()) {
+            if (child.privileges != null && !child.privileges.contains(privilege))
+                return false;
+            if (!allowsInDescendants(child, privilege))
+                return false;
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty() && root.privileges == null;
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.replace('\\', '/').split("/")) {
+            if (!segment.isEmpty() && !segment.equals("."))
+                segments.add(segment);
+        }
+        return segments;
+    }
+
+    // EnumSet.copyOf ne prihvata prazan skup koji nije EnumSet
+    private static Collection<Privileges> withNone(Set<Privileges> privileges) {
+        return privileges.isEmpty() ? EnumSet.noneOf(Privileges.class) : privileges;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Set<Privileges> privileges;
+    }
+}
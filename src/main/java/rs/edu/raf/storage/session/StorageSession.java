@@ -0,0 +1,156 @@
+package rs.edu.raf.storage.session;
+
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.StorageModel;
+import rs.edu.raf.storage.batch.StorageBatch;
+import rs.edu.raf.storage.enums.Operations;
+import rs.edu.raf.storage.listing.FileEntry;
+import rs.edu.raf.storage.listing.ListingPage;
+import rs.edu.raf.storage.query.StorageQuery;
+import rs.edu.raf.storage.transfer.PutResult;
+import rs.edu.raf.storage.user_management.User;
+
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+// Sesija jednog korisnika nad skladistem. Svaka operacija kroz sesiju se izvrsava kao njen korisnik,
+// nezavisno od korisnika ulogovanog preko login(), pa vise korisnika moze istovremeno raditi nad istim skladistem.
+public class StorageSession implements AutoCloseable {
+
+    private final String id = UUID.randomUUID().toString();
+    private final LocalFileStorageImplementation storage;
+    private final StorageModel storageModel;
+    private final User user;
+    private volatile boolean open = true;
+
+    public StorageSession(LocalFileStorageImplementation storage, StorageModel storageModel, User user) {
+        this.storage = storage;
+        this.storageModel = storageModel;
+        this.user = user;
+    }
+
+    public void createFolder(String path, String ...folderNames) {
+        run(() -> storage.createFolder(path, folderNames));
+    }
+
+    public void createFile(String path, String ...filenames) {
+        run(() -> storage.createFile(path, filenames));
+    }
+
+    public void delete(String ...paths) {
+        run(() -> storage.delete(paths));
+    }
+
+    public void get(String ...paths) {
+        run(() -> storage.get(paths));
+    }
+
+    public void move(String destination, String ...sources) {
+        run(() -> storage.move(destination, sources));
+    }
+
+    public void put(String destination, String ...sources) {
+        run(() -> storage.put(destination, sources));
+    }
+
+    public void put(String destination, String filename, ReadableByteChannel source) {
+        run(() -> storage.put(destination, filename, source));
+    }
+
+    public void put(String destination, String filename, InputStream source) {
+        run(() -> storage.put(destination, filename, source));
+    }
+
+    public void executeBatch(StorageBatch batch) {
+        run(() -> storage.executeBatch(batch));
+    }
+
+    public List<PutResult> putParallel(String destination, String ...sources) {
+        return call(() -> storage.putParallel(destination, sources));
+    }
+
+    public SeekableByteChannel openRead(String path) {
+        return call(() -> storage.openRead(path));
+    }
+
+    public MappedByteBuffer map(String path, long position, long size) {
+        return call(() -> storage.map(path, position, size));
+    }
+
+    public Collection<String> list(String path, boolean searchSubdirectories) {
+        return call(() -> storage.list(path, searchSubdirectories));
+    }
+
+    public Collection<String> list(String path, String argument, Operations operation, boolean searchSubdirectories) {
+        return call(() -> storage.list(path, argument, operation, searchSubdirectories));
+    }
+
+    public Collection<String> list(String path, String argument, Operations operation, int limit, boolean searchSubdirectories) {
+        return call(() -> storage.list(path, argument, operation, limit, searchSubdirectories));
+    }
+
+    public List<FileEntry> listEntries(String path, String argument, Operations operation, boolean searchSubdirectories) {
+        return call(() -> storage.listEntries(path, argument, operation, searchSubdirectories));
+    }
+
+    public List<FileEntry> query(StorageQuery query) {
+        return call(() -> storage.query(query));
+    }
+
+    public ListingPage listPage(String path, boolean searchSubdirectories, String continuationToken, int pageSize) {
+        return call(() -> storage.listPage(path, searchSubdirectories, continuationToken, pageSize));
+    }
+
+    // Izvrsavanje operacije kao korisnik sesije (korisnik se vezuje za trenutnu nit dok operacija traje)
+    public <T> T call(Supplier<T> operation) {
+        if (!open)
+            throw new IllegalStateException("Sesija je zatvorena.");
+
+        User previous = storageModel.bindSessionUser(user);
+        try {
+            return operation.get();
+        } finally {
+            storageModel.bindSessionUser(previous);
+        }
+    }
+
+    public void run(Runnable operation) {
+        call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    // Odjava - sesija vise ne prihvata operacije
+    @Override
+    public void close() {
+        open = false;
+        storageModel.getSessions().remove(id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public LocalFileStorageImplementation getStorage() {
+        return storage;
+    }
+
+    public StorageModel getStorageModel() {
+        return storageModel;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+}
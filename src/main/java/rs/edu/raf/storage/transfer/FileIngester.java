@@ -0,0 +1,136 @@
+package rs.edu.raf.storage.transfer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Prenos jednog fajla u skladiste izabranim nacinom, uz automatski prelaz na sledeci nacin ako izabrani nije podrzan:
+// HARD_LINK -> REFLINK -> TRANSFER_TO -> COPY
+// Sadrzaj se prvo prenosi u privremeni fajl u folderu za pripremu, pa se atomski preimenuje preko cilja,
+// tako da postojeci fajl ostaje netaknut ako prenos ne uspe.
+public class FileIngester {
+
+    private static final boolean REFLINK_AVAILABLE = System.getProperty("os.name", "").toLowerCase().contains("linux");
+
+    private FileIngester() {
+
+    }
+
+    public static Path ingest(Path source, Path target, Path staging, IngestMode mode) throws IOException {
+        Path staged = stage(source, staging, mode);
+        try {
+            return commit(staged, target);
+        } finally {
+            // Ako su izvor i cilj vec isti fajl (hard link), preimenovanje ne radi nista i privremeni link ostaje
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    // Prenos u novi privremeni fajl u folderu staging; staging mora biti na istom fajl sistemu kao skladiste
+    public static Path stage(Path source, Path staging, IngestMode mode) throws IOException {
+        Path temp = staging.resolve("ingest-" + UUID.randomUUID());
+        switch (mode) {
+            case HARD_LINK:
+                if (hardLink(source, temp))
+                    return temp;
+                // fall through
+            case REFLINK:
+                if (reflink(source, temp))
+                    return temp;
+                // fall through
+            case TRANSFER_TO:
+                if (transfer(source, temp))
+                    return temp;
+                // fall through
+            default:
+                try {
+                    return Files.copy(source, temp);
+                } catch (IOException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+        }
+    }
+
+    // Zamena cilja pripremljenim fajlom jednim preimenovanjem
+    public static Path commit(Path staged, Path target) throws IOException {
+        try {
+            return Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            return Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Hard link radi samo na istom fajl sistemu
+    private static boolean hardLink(Path source, Path temp) {
+        try {
+            Files.createLink(temp, source);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    // Java nema API za reflink, pa se koristi "cp --reflink=always" koji ne uspeva ako fajl sistem ne podrzava kloniranje
+    private static boolean reflink(Path source, Path temp) {
+        if (!REFLINK_AVAILABLE)
+            return false;
+        try {
+            Process process = new ProcessBuilder("cp", "--reflink=always", source.toString(), temp.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                deleteQuietly(temp);
+                return false;
+            }
+            if (process.exitValue() == 0)
+                return true;
+            deleteQuietly(temp);
+            return false;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deleteQuietly(temp);
+            return false;
+        }
+    }
+
+    // Ako se izvor skrati tokom prenosa, transferTo vraca 0 - prenos se prekida umesto beskonacne petlje
+    private static boolean transfer(Path source, Path temp) throws IOException {
+        long size = 0;
+        long position = 0;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            size = in.size();
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0)
+                    break;
+                position += transferred;
+            }
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            return false;
+        }
+
+        if (position < size) {
+            deleteQuietly(temp);
+            throw new IOException("Fajl " + source + " je skracen tokom prenosa");
+        }
+        return true;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
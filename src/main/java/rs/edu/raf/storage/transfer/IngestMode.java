@@ -0,0 +1,13 @@
+package rs.edu.raf.storage.transfer;
+
+// Nacin na koji put() prenosi sadrzaj fajla u skladiste
+public enum IngestMode {
+    // Obicno kopiranje (Files.copy)
+    COPY,
+    // Kopiranje u jezgru preko FileChannel.transferTo
+    TRANSFER_TO,
+    // Clone/reflink - deli blokove sa izvorom dok se neki od fajlova ne izmeni (btrfs, xfs, apfs...)
+    REFLINK,
+    // Hard link na izvorni fajl - izvor i fajl u skladistu su isti fajl na disku
+    HARD_LINK
+}
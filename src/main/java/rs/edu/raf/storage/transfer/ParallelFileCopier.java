@@ -0,0 +1,109 @@
+package rs.edu.raf.storage.transfer;
+
+import rs.edu.raf.storage.concurrency.StripedPathLock;
+import rs.edu.raf.storage.dedup.BlobStore;
+import rs.edu.raf.storage.exceptions.OperationFailedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Prenos vise fajlova u isti folder na ogranicenom broju niti.
+// Greska pri kopiranju jednog fajla se upisuje u njegov rezultat i ne prekida ostale.
+public class ParallelFileCopier {
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public ParallelFileCopier(int parallelism) {
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "storage-put");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Rezultati su u istom redosledu kao prosledjeni rezultati (sa popunjenim source-om)
+    // Ako je blobStore prosledjen, fajlovi se upisuju preko njega (deduplikacija) umesto izabranim nacinom prenosa
+    // Privremeni fajlovi se prave u folderu staging; ciljni folder se zakljucava (locks) samo za zamenu pojedinacnog fajla
+    public List<PutResult> copyAll(List<PutResult> pending, String targetDirectory, Path staging, IngestMode mode, BlobStore blobStore, StripedPathLock locks) {
+        List<Future<PutResult>> futures = new ArrayList<>();
+        for (PutResult result : pending)
+            futures.add(executor.submit(() -> copy(result, targetDirectory, staging, mode, blobStore, locks)));
+
+        List<PutResult> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(PutResult.failed(pending.get(i).getSource(), new OperationFailedException()));
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                results.add(PutResult.failed(pending.get(i).getSource(), new OperationFailedException()));
+            }
+        }
+        return results;
+    }
+
+    private PutResult copy(PutResult result, String targetDirectory, Path staging, IngestMode mode, BlobStore blobStore, StripedPathLock locks) {
+        Path sourcePath = Paths.get(result.getSource());
+        Path target = Paths.get(targetDirectory + "/" + sourcePath.getFileName());
+        Path staged = null;
+        BlobStore.StagedBlob stagedBlob = null;
+        try {
+            if (blobStore != null) {
+                stagedBlob = blobStore.stage(sourcePath);
+                result.setSize(stagedBlob.getSize());
+            } else {
+                staged = FileIngester.stage(sourcePath, staging, mode);
+                result.setSize(Files.size(staged));
+            }
+
+            try (StripedPathLock.Locked locked = locks.lock(targetDirectory)) {
+                // Ako se fajl prepisuje, od zauzeca se kasnije oduzima stari fajl
+                result.setReplacedExisting(Files.exists(target));
+                result.setReplacedSize(Files.isRegularFile(target) ? Files.size(target) : 0);
+                if (stagedBlob != null) {
+                    result.setStoredBytes(blobStore.commit(stagedBlob, target));
+                    result.setTarget(target);
+                } else {
+                    result.setTarget(FileIngester.commit(staged, target));
+                    result.setStoredBytes(result.getSize() - result.getReplacedSize());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            result.setError(new OperationFailedException());
+        } finally {
+            deleteQuietly(staged);
+            if (stagedBlob != null)
+                deleteQuietly(stagedBlob.getTemp());
+        }
+        return result;
+    }
+
+    // Ako su izvor i cilj vec isti fajl (hard link), preimenovanje ne radi nista i privremeni fajl ostaje
+    private static void deleteQuietly(Path path) {
+        if (path == null)
+            return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,87 @@
+package rs.edu.raf.storage.transfer;
+
+import java.nio.file.Path;
+
+// Ishod dodavanja jednog fajla u okviru paralelnog put-a
+public class PutResult {
+
+    private final String source;
+    private Path target;
+    private long size;
+    private long replacedSize = 0;
+    // Promena fizickog zauzeca skladista (sa deduplikacijom moze biti 0 iako je fajl dodat)
+    private long storedBytes = 0;
+    private boolean replacedExisting = false;
+    private RuntimeException error;
+
+    public PutResult(String source) {
+        this.source = source;
+    }
+
+    public static PutResult failed(String source, RuntimeException error) {
+        PutResult result = new PutResult(source);
+        result.setError(error);
+        return result;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    public void setTarget(Path target) {
+        this.target = target;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getReplacedSize() {
+        return replacedSize;
+    }
+
+    public void setReplacedSize(long replacedSize) {
+        this.replacedSize = replacedSize;
+    }
+
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    public void setStoredBytes(long storedBytes) {
+        this.storedBytes = storedBytes;
+    }
+
+    public boolean isReplacedExisting() {
+        return replacedExisting;
+    }
+
+    public void setReplacedExisting(boolean replacedExisting) {
+        this.replacedExisting = replacedExisting;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public void setError(RuntimeException error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return source + (isSuccessful() ? " -> " + target : " FAILED " + error.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,51 @@
+package rs.edu.raf.storage.transfer;
+
+import rs.edu.raf.storage.exceptions.StorageSizeExceededException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+// Upis sadrzaja iz kanala u fajl preko velikog direktnog bafera; pre upisa svakog dela se rezervise kvota za njega
+public class StreamIngester {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    public static final String TEMP_SUFFIX = ".part";
+
+    private StreamIngester() {
+
+    }
+
+    // Privremeni fajl u folderu za pripremu upisa (ne vidi se u listanju i ne racuna se u broj fajlova foldera):
+    // ime + nasumicni broj + ".part"
+    public static Path createTempFile(Path staging, String filename) throws IOException {
+        return Files.createTempFile(staging, filename + "-", TEMP_SUFFIX);
+    }
+
+    // Ako rezervacija ne uspe, upis se prekida, fajl se brise i baca se StorageSizeExceededException
+    public static long write(ReadableByteChannel source, Path target, LongPredicate reserve) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long written = 0;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                if (!reserve.test(buffer.remaining()))
+                    throw new StorageSizeExceededException();
+                written += buffer.remaining();
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+                buffer.clear();
+            }
+            out.force(false);
+            return written;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+}
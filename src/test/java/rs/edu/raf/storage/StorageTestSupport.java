@@ -0,0 +1,69 @@
+package rs.edu.raf.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Pomocne metode za testove: otvaranje skladista u privremenom folderu i pravljenje stabla fajlova
+public class StorageTestSupport {
+
+    public static final String USER = "admin";
+    public static final String PASSWORD = "admin";
+
+    private StorageTestSupport() {
+
+    }
+
+    // Otvaranje (ili pravljenje) skladista u root folderu sa podesavanjima koja se postavljaju pre otvaranja
+    public static LocalFileStorageImplementation open(Path root, Consumer<LocalFileStorageImplementation> settings) {
+        LocalFileStorageImplementation storage = new LocalFileStorageImplementation();
+        settings.accept(storage);
+        storage.initializeStorage(root.toString(), USER, PASSWORD);
+        return storage;
+    }
+
+    public static LocalFileStorageImplementation open(Path root) {
+        return open(root, storage -> { });
+    }
+
+    // Stablo sa folders foldera na dva nivoa i razlicitim imenima i ekstenzijama fajlova
+    public static void populate(Path root, int folders, int filesPerFolder) throws IOException {
+        for (int i = 0; i < folders; i++) {
+            Path folder = Files.createDirectories(root.resolve("dir" + i).resolve("sub" + (i % 3)));
+            for (int j = 0; j < filesPerFolder; j++) {
+                writeFile(folder.resolve("report-q" + (j % 4) + "-" + j + ".pdf"), j * 7);
+                writeFile(folder.resolve("data" + j + ".tar.gz"), j * 11);
+                writeFile(folder.getParent().resolve("notes" + j + ".txt"), j * 3);
+                writeFile(folder.getParent().resolve("README" + j), j);
+            }
+        }
+    }
+
+    public static Path writeFile(Path file, int size) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, new byte[size]);
+    }
+
+    public static void deleteTree(Path path) throws IOException {
+        if (!Files.exists(path))
+            return;
+        try (Stream<Path> tree = Files.walk(path)) {
+            for (Path entry : tree.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(entry);
+        }
+    }
+
+    public static List<String> sorted(Collection<String> values) {
+        List<String> list = new ArrayList<>(values);
+        Collections.sort(list);
+        return list;
+    }
+}
@@ -0,0 +1,83 @@
+package rs.edu.raf.storage.accounting;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static rs.edu.raf.storage.StorageTestSupport.populate;
+import static rs.edu.raf.storage.StorageTestSupport.writeFile;
+
+// Vodjeno zauzece mora odgovarati novom skeniranju, i kada se fajlovi menjaju dok reconcile() skenira disk
+public class UsageAccountingTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void reconcileFixesExternalChanges() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 4, 3);
+        UsageAccounting accounting = UsageAccounting.build(root.toString());
+
+        writeFile(root.resolve("dir1/outside.bin"), 500);
+        assertEquals(500, accounting.reconcile());
+        assertUsageMatchesScan(accounting, root);
+    }
+
+    @Test
+    public void reconcileKeepsChangesMadeDuringScan() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 20, 10);
+        UsageAccounting accounting = UsageAccounting.build(root.toString());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            try {
+                // Izmena na disku i obavestenje su zajedno pre ili posle zamene stanja u reconcile(),
+                // a samo skeniranje ide paralelno sa izmenama
+                for (int i = 0; running.get(); i++) {
+                    synchronized (accounting) {
+                        change(accounting, root.resolve("dir" + (i % 20)), i);
+                    }
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        for (int round = 0; round < 30; round++)
+            accounting.reconcile();
+        running.set(false);
+        writer.join();
+
+        assertUsageMatchesScan(accounting, root);
+    }
+
+    private static void change(UsageAccounting accounting, Path folder, int i) throws Exception {
+        Path file = writeFile(folder.resolve("added" + i + ".bin"), 10 + i % 7);
+        accounting.fileAdded(file.toString(), Files.size(file));
+        if (i % 3 == 0) {
+            long size = Files.size(file);
+            Files.delete(file);
+            accounting.fileRemoved(file.toString(), size);
+        }
+        if (i % 50 == 0) {
+            Path created = Files.createDirectories(folder.resolve("created" + i));
+            writeFile(created.resolve("inside.bin"), 100);
+            accounting.directoryAdded(created.toString());
+        }
+    }
+
+    private static void assertUsageMatchesScan(UsageAccounting accounting, Path root) {
+        UsageAccounting scanned = UsageAccounting.build(root.toString());
+        for (String path : new String[]{"", "dir1", "dir2", "dir3/sub0"}) {
+            String key = root.resolve(path).toString();
+            assertEquals(scanned.getUsage(key).getBytes(), accounting.getUsage(key).getBytes(), path);
+            assertEquals(scanned.getUsage(key).getFileCount(), accounting.getUsage(key).getFileCount(), path);
+        }
+    }
+}
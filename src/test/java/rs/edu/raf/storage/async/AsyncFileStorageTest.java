@@ -0,0 +1,79 @@
+package rs.edu.raf.storage.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.exceptions.InsufficientPrivilegesException;
+import rs.edu.raf.storage.session.StorageSession;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Asinhrone operacije se izvrsavaju kao korisnik koji ih je pokrenuo, a ne kao korisnik ulogovan preko login()
+public class AsyncFileStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalFileStorageImplementation storage;
+    private StorageSession session;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 3, 2);
+        storage = open(root);
+        storage.addNewUser("viewer", "pw", EnumSet.of(Privileges.VIEW));
+        storage.setFolderPrivileges("viewer", "dir1", EnumSet.noneOf(Privileges.class));
+        session = storage.openSession("viewer", "pw");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        session.close();
+        storage.close();
+    }
+
+    @Test
+    public void operationRunsAsCallingSessionUser() throws Exception {
+        try (AsyncFileStorage async = new AsyncFileStorage(storage)) {
+            CompletableFuture<Void> create = session.call(() -> async.createFolderAsync("", "created"));
+            assertFailsWith(InsufficientPrivilegesException.class, create);
+            assertFalse(Files.exists(root.resolve("created")));
+
+            assertEquals(sorted(session.list("root", true)), sorted(session.call(() -> async.listAsync("root", true)).get()));
+
+            // Bez sesije operacija ide kao ulogovani korisnik
+            async.createFolderAsync("", "created").get();
+            assertTrue(Files.exists(root.resolve("created")));
+        }
+    }
+
+    @Test
+    public void sessionStorageRunsAsSessionUser() throws Exception {
+        try (AsyncFileStorage async = new AsyncFileStorage(session)) {
+            assertFailsWith(InsufficientPrivilegesException.class, async.createFolderAsync("", "created"));
+            assertFalse(Files.exists(root.resolve("created")));
+            assertEquals(sorted(session.list("root", true)), sorted(async.listAsync("root", true).get()));
+            assertNotEquals(sorted(storage.list("root", true)), sorted(async.listAsync("root", true).get()));
+
+            session.close();
+            assertFailsWith(IllegalStateException.class, async.listAsync("root", true));
+        }
+    }
+
+    private static void assertFailsWith(Class<? extends Throwable> type, CompletableFuture<?> future) {
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertTrue(type.isInstance(exception.getCause()), String.valueOf(exception.getCause()));
+    }
+}
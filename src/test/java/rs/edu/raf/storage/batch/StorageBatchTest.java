@@ -0,0 +1,124 @@
+package rs.edu.raf.storage.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.accounting.DirectoryUsage;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+import rs.edu.raf.storage.enums.Operations;
+import rs.edu.raf.storage.exceptions.FileNotFoundException;
+import rs.edu.raf.storage.exceptions.OperationFailedException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Grupa operacija se izvrsava u celosti ili se ponistava u celosti (disk, zauzece, indeksi)
+public class StorageBatchTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private Path source;
+    private LocalFileStorageImplementation storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        source = Files.createDirectories(directory.resolve("source"));
+        for (int i = 0; i < 5; i++)
+            writeFile(source.resolve("f" + i + ".pdf"), 100 * (i + 1));
+        storage = open(root, s -> {
+            s.setUsageAccountingEnabled(true);
+            s.setDirectoryIndexEnabled(true);
+            s.setNameIndexEnabled(true);
+            s.setExtensionIndexEnabled(true);
+        });
+        storage.createFolder("", "a");
+        storage.put("a", source.resolve("f0.pdf").toString(), source.resolve("f1.pdf").toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void failedBatchIsRolledBack() throws Exception {
+        long size = storage.getCurrentStorage().getCurrentStorageSize();
+        DirectoryUsage usage = storage.getDirectoryUsage("root");
+        List<String> listing = sorted(storage.list("root", true));
+
+        // Umesto .trash foldera je fajl, pa privremeni fajl za put ne moze da se napravi i grupa se ponistava
+        Path trash = root.resolve(TrashReclaimer.TRASH_FOLDER);
+        deleteTree(trash);
+        Files.write(trash, new byte[0]);
+        StorageBatch batch = new StorageBatch()
+                .createFolder("", "b")
+                .put("b", source.resolve("f2.pdf").toString())
+                .move("b", "a/f0.pdf")
+                .delete("a/f1.pdf");
+        assertThrows(OperationFailedException.class, () -> storage.executeBatch(batch));
+        Files.delete(trash);
+
+        assertFalse(Files.exists(root.resolve("b")));
+        assertTrue(Files.exists(root.resolve("a/f0.pdf")));
+        assertTrue(Files.exists(root.resolve("a/f1.pdf")));
+        assertEquals(listing, sorted(storage.list("root", true)));
+        assertEquals(size, storage.getCurrentStorage().getCurrentStorageSize());
+        assertEquals(usage.getBytes(), storage.getDirectoryUsage("root").getBytes());
+        assertEquals(usage.getFileCount(), storage.getDirectoryUsage("root").getFileCount());
+        assertIndexesMatchWalk();
+    }
+
+    @Test
+    public void invalidBatchChangesNothing() {
+        long size = storage.getCurrentStorage().getCurrentStorageSize();
+        StorageBatch batch = new StorageBatch()
+                .createFolder("", "b")
+                .put("missing", source.resolve("f2.pdf").toString());
+        assertThrows(FileNotFoundException.class, () -> storage.executeBatch(batch));
+
+        assertFalse(Files.exists(root.resolve("b")));
+        assertEquals(size, storage.getCurrentStorage().getCurrentStorageSize());
+    }
+
+    @Test
+    public void successfulBatchAppliesEverything() throws Exception {
+        long size = storage.getCurrentStorage().getCurrentStorageSize();
+        StorageBatch batch = new StorageBatch()
+                .createFolder("", "b")
+                .createFolder("b", "c")
+                .put("b/c", source.resolve("f2.pdf").toString())
+                .move("b", "a/f0.pdf")
+                .delete("a/f1.pdf");
+        storage.executeBatch(batch);
+
+        assertTrue(Files.exists(root.resolve("b/c/f2.pdf")));
+        assertTrue(Files.exists(root.resolve("b/f0.pdf")));
+        assertFalse(Files.exists(root.resolve("a/f0.pdf")));
+        assertFalse(Files.exists(root.resolve("a/f1.pdf")));
+        assertEquals(size + 300 - 200, storage.getCurrentStorage().getCurrentStorageSize());
+        assertEquals(400, storage.getDirectoryUsage("b").getBytes());
+        assertIndexesMatchWalk();
+    }
+
+    // Velicina foldera u listingu dolazi iz evidencije zauzeca, pa je i obilazak ukljucuje
+    private void assertIndexesMatchWalk() {
+        LocalFileStorageImplementation plain = open(root, s -> s.setUsageAccountingEnabled(true));
+        try {
+            for (String query : new String[]{"f0", "f1.pdf", "f2.pdf"})
+                assertEquals(sorted(plain.list("root", query, Operations.FILTER_FILENAME, true)), sorted(storage.list("root", query, Operations.FILTER_FILENAME, true)));
+            assertEquals(sorted(plain.list("root", ".pdf", Operations.FILTER_EXTENSION, true)), sorted(storage.list("root", ".pdf", Operations.FILTER_EXTENSION, true)));
+            assertEquals(sorted(plain.list("root", true)), sorted(storage.list("root", true)));
+        } finally {
+            plain.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package rs.edu.raf.storage.concurrency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Brisanje uvek zakljucava folder iz kog brise, i kada nit vec drzi lock nekog drugog foldera
+public class StripedPathLockTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalFileStorageImplementation storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 2, 2);
+        storage = open(root);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void deleteWaitsForFolderLockWhileHoldingAnother() throws Exception {
+        StripedPathLock locks = storage.getCurrentStorage().getPathLocks();
+        String dir0 = root.resolve("dir0").toString();
+        String dir1 = root.resolve("dir1").toString();
+
+        CompletableFuture<Void> deleting;
+        try (StripedPathLock.Locked locked = locks.lock(dir0)) {
+            deleting = CompletableFuture.runAsync(() -> {
+                try (StripedPathLock.Locked other = locks.lock(dir1)) {
+                    storage.delete("dir0/notes1.txt");
+                }
+            });
+            Thread.sleep(300);
+            assertFalse(deleting.isDone());
+            assertTrue(Files.exists(root.resolve("dir0/notes1.txt")));
+        }
+        deleting.get(10, TimeUnit.SECONDS);
+        assertFalse(Files.exists(root.resolve("dir0/notes1.txt")));
+    }
+
+    @Test
+    public void nestedLockIsReentrant() throws Exception {
+        StripedPathLock locks = storage.getCurrentStorage().getPathLocks();
+        try (StripedPathLock.Locked locked = locks.lock(root.resolve("dir0").toString())) {
+            storage.delete("dir0/notes1.txt");
+        }
+        assertFalse(Files.exists(root.resolve("dir0/notes1.txt")));
+    }
+}
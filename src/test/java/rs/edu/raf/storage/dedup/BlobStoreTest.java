@@ -0,0 +1,133 @@
+package rs.edu.raf.storage.dedup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.exceptions.FileNotFoundException;
+import rs.edu.raf.storage.exceptions.OperationFailedException;
+import rs.edu.raf.storage.listing.FileEntry;
+import rs.edu.raf.storage.query.StorageQuery;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Deduplikacija: isti sadrzaj se cuva jednom, fajlovi korisnika ostaju upisivi, a .blobs folder nije dostupan operacijama
+public class BlobStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private Path source;
+    private LocalFileStorageImplementation storage;
+    private BlobStore blobStore;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        source = writeFile(directory.resolve("source/a.bin"), 1000);
+        writeFile(directory.resolve("copy/a.bin"), 1000);
+        storage = open(root, s -> s.setDeduplicationEnabled(true));
+        blobStore = storage.getCurrentStorage().getBlobStore();
+        assertNotNull(blobStore);
+        storage.createFolder("", "one", "two");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void sameContentIsStoredOnce() throws Exception {
+        long size = storage.getCurrentStorage().getCurrentStorageSize();
+        storage.put("one", source.toString());
+        storage.put("two", directory.resolve("copy/a.bin").toString());
+
+        assertEquals(1, blobStore.getBlobCount());
+        assertEquals(size + 1000, storage.getCurrentStorage().getCurrentStorageSize());
+        assertTrue(Files.isWritable(root.resolve("one/a.bin")));
+        assertTrue(Files.isWritable(source));
+
+        // Prepisivanje istim sadrzajem ne menja zauzece
+        storage.put("one", source.toString());
+        assertEquals(1, blobStore.getBlobCount());
+        assertEquals(size + 1000, storage.getCurrentStorage().getCurrentStorageSize());
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void internalFoldersAreRefused() {
+        storage.put("one", source.toString());
+        assertThrows(FileNotFoundException.class, () -> storage.delete(BlobStore.BLOB_FOLDER));
+        assertThrows(FileNotFoundException.class, () -> storage.delete("one/../" + BlobStore.BLOB_FOLDER));
+        assertThrows(FileNotFoundException.class, () -> storage.list(BlobStore.BLOB_FOLDER, false));
+        assertThrows(FileNotFoundException.class, () -> storage.move("one", BlobStore.BLOB_FOLDER));
+        assertThrows(FileNotFoundException.class, () -> storage.put(BlobStore.BLOB_FOLDER, directory.resolve("copy/a.bin").toString()));
+        assertThrows(OperationFailedException.class, () -> storage.createFolder("", ".trash"));
+        assertTrue(Files.isDirectory(root.resolve(BlobStore.BLOB_FOLDER)));
+        assertEquals(1, blobStore.getBlobCount());
+    }
+
+    @Test
+    public void failedStoreKeepsTarget() throws Exception {
+        Path target = writeFile(root.resolve("one/busy/inside.txt"), 10).getParent();
+        assertThrows(IOException.class, () -> blobStore.store(source, target));
+
+        assertTrue(Files.isRegularFile(target.resolve("inside.txt")));
+        assertEquals(0, blobStore.getBlobCount());
+        assertNoTempFiles();
+    }
+
+    private void assertNoTempFiles() throws IOException {
+        try (Stream<Path> blobs = Files.list(blobStore.getBlobDirectory())) {
+            assertTrue(blobs.noneMatch(blob -> blob.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    // Sadrzaj koji skladiste vec ima se samo hash-uje, bez kopije
+    @Test
+    public void knownContentIsNotCopied() throws Exception {
+        storage.put("one", source.toString());
+        BlobStore.StagedBlob known = blobStore.stage(directory.resolve("copy/a.bin"));
+        assertNull(known.getTemp());
+        assertEquals(1000, known.getSize());
+
+        BlobStore.StagedBlob unknown = blobStore.stage(writeFile(directory.resolve("copy/b.bin"), 700));
+        assertNotNull(unknown.getTemp());
+        Files.delete(unknown.getTemp());
+    }
+
+    // Fajl dodat na postojeci blob ima svoj datum izmene, i posle premestanja i ponovnog otvaranja
+    @Test
+    public void sharedBlobKeepsLogicalModifiedTime() throws Exception {
+        storage.put("one", source.toString());
+        long old = System.currentTimeMillis() - 86_400_000L;
+        Files.setLastModifiedTime(root.resolve("one/a.bin"), FileTime.fromMillis(old));
+        long putAt = System.currentTimeMillis();
+        storage.put("two", directory.resolve("copy/a.bin").toString());
+        storage.createFolder("", "three");
+        storage.move("three", "two/a.bin");
+
+        for (int i = 0; i < 2; i++) {
+            List<FileEntry> recent = storage.query(new StorageQuery("root").type(StorageQuery.EntryType.FILE).extension(".bin").modifiedBetween(putAt - 1000, Long.MAX_VALUE));
+            assertEquals(List.of("three/a.bin"), recent.stream().map(FileEntry::getRelativePath).collect(Collectors.toList()));
+            List<FileEntry> newest = storage.query(new StorageQuery("root").type(StorageQuery.EntryType.FILE).extension(".bin").sortBy(StorageQuery.SortKey.MODIFIED, true));
+            assertEquals("three/a.bin", newest.get(0).getRelativePath());
+            assertEquals(old / 1000, newest.get(1).getLastModified() / 1000);
+
+            storage.close();
+            storage = open(root, s -> s.setDeduplicationEnabled(true));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package rs.edu.raf.storage.deletion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Pozadinsko brisanje .trash foldera mora osloboditi tacno ono sto je bilo uracunato u zauzece
+public class TrashReclaimerTest {
+
+    @TempDir
+    Path directory;
+
+    // Privremeni fajlovi put-a ostali posle pada nisu uracunati u zauzece, pa ga njihovo brisanje ne menja
+    @Test
+    public void leftoverStagingDoesNotReleaseStorage() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 3, 2);
+        LocalFileStorageImplementation storage = open(root);
+        storage.put("dir0", writeFile(directory.resolve("source/a.txt"), 1000).toString());
+        long size = storage.getCurrentStorage().getCurrentStorageSize();
+        storage.close();
+
+        Path leftover = root.resolve(TrashReclaimer.TRASH_FOLDER).resolve(TrashReclaimer.STAGING_PREFIX + "crashed");
+        writeFile(leftover.resolve("ingest-1"), 5000);
+        writeFile(leftover.resolve("report.pdf-1.part"), 3000);
+
+        storage = open(root);
+        try {
+            awaitIdle(storage);
+            assertFalse(Files.exists(leftover));
+            assertEquals(size, storage.getCurrentStorage().getCurrentStorageSize());
+        } finally {
+            storage.close();
+        }
+    }
+
+    // Privremeni fajl put-a koji je upravo u toku se ne racuna kao zauzet prostor pri proveri zauzeca
+    @Test
+    public void inFlightStagingIsNotCounted() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 3, 2);
+        LocalFileStorageImplementation storage = open(root, s -> {
+            s.setUsageAccountingEnabled(true);
+            s.setFastDeleteEnabled(true);
+        });
+        try {
+            storage.delete("dir0");
+            awaitIdle(storage);
+            long size = storage.getCurrentStorage().getCurrentStorageSize();
+            writeFile(storage.getCurrentStorage().getStagingDirectory().resolve("ingest-1"), 5000);
+            storage.getCurrentStorage().reconcileUsage();
+            assertEquals(size, storage.getCurrentStorage().getCurrentStorageSize());
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    public void fastDeleteReleasesDeletedBytes() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 4, 5);
+        LocalFileStorageImplementation storage = open(root, s -> {
+            s.setUsageAccountingEnabled(true);
+            s.setFastDeleteEnabled(true);
+        });
+        try {
+            long size = storage.getCurrentStorage().getCurrentStorageSize();
+            long deleted = storage.getDirectoryUsage("dir1").getBytes() + Files.size(root.resolve("dir2/notes1.txt"));
+            storage.delete("dir1", "dir2/notes1.txt");
+            assertFalse(Files.exists(root.resolve("dir1")));
+            awaitIdle(storage);
+
+            assertEquals(size - deleted, storage.getCurrentStorage().getCurrentStorageSize());
+            assertEquals(0, storage.getCurrentStorage().getTrashReclaimer().getPendingBytes());
+            storage.getCurrentStorage().reconcileUsage();
+            assertEquals(size - deleted, storage.getCurrentStorage().getCurrentStorageSize());
+        } finally {
+            storage.close();
+        }
+    }
+
+    // Stavka premestena u .trash pre pada je jos uracunata u zauzece i oslobadja se pri sledecem pokretanju
+    @Test
+    public void trashLeftAfterCrashIsReleasedOnce() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 4, 5);
+        for (boolean accounting : new boolean[]{false, true}) {
+            LocalFileStorageImplementation storage = open(root, s -> s.setUsageAccountingEnabled(accounting));
+            long size = storage.getCurrentStorage().getCurrentStorageSize();
+            storage.close();
+
+            // Pad posle preimenovanja, a pre oslobadjanja zauzeca
+            Path dir = root.resolve(accounting ? "dir3" : "dir2");
+            long bytes = sizeOf(dir);
+            Files.createDirectories(root.resolve(TrashReclaimer.TRASH_FOLDER));
+            Files.move(dir, root.resolve(TrashReclaimer.TRASH_FOLDER).resolve("crashed-" + accounting));
+
+            storage = open(root, s -> s.setUsageAccountingEnabled(accounting));
+            try {
+                awaitIdle(storage);
+                assertEquals(size - bytes, storage.getCurrentStorage().getCurrentStorageSize(), "accounting " + accounting);
+                assertFalse(TrashReclaimer.hasPendingTrash(root.toString()) && Files.exists(root.resolve(TrashReclaimer.TRASH_FOLDER).resolve("crashed-" + accounting)));
+            } finally {
+                storage.close();
+            }
+        }
+    }
+
+    // Provera zauzeca dok pozadinska nit brise ne sme da oduzme obrisane bajtove dvaput
+    @Test
+    public void reconcileDuringReclaimCountsBytesOnce() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 4, 5);
+        LocalFileStorageImplementation storage = open(root, s -> {
+            s.setUsageAccountingEnabled(true);
+            s.setFastDeleteEnabled(true);
+            s.setTrashReclaimRate(10);
+        });
+        try {
+            long size = storage.getCurrentStorage().getCurrentStorageSize();
+            long deleted = storage.getDirectoryUsage("dir1").getBytes();
+            storage.delete("dir1");
+            TrashReclaimer reclaimer = storage.getCurrentStorage().getTrashReclaimer();
+            while (!reclaimer.isIdle()) {
+                storage.getCurrentStorage().reconcileUsage();
+                Thread.sleep(50);
+            }
+            assertEquals(size - deleted, storage.getCurrentStorage().getCurrentStorageSize());
+        } finally {
+            storage.close();
+        }
+    }
+
+    private static long sizeOf(Path path) throws Exception {
+        try (Stream<Path> tree = Files.walk(path)) {
+            return tree.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    static void awaitIdle(LocalFileStorageImplementation storage) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        TrashReclaimer reclaimer = storage.getCurrentStorage().getTrashReclaimer();
+        assertNotNull(reclaimer);
+        while (!reclaimer.isIdle()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
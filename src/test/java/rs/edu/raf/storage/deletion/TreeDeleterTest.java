@@ -0,0 +1,87 @@
+package rs.edu.raf.storage.deletion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.exceptions.InsufficientPrivilegesException;
+import rs.edu.raf.storage.session.StorageSession;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Brisanje stabla, sekvencijalno i paralelno: folder se brise u celosti ili nikako, a zauzece se smanjuje tacno za obrisane bajtove
+public class TreeDeleterTest {
+
+    private static final int[] PARALLELISM = {1, 4};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void deleteRemovesWholeTree() throws Exception {
+        for (int parallelism : PARALLELISM) {
+            Path root = directory.resolve("storage" + parallelism);
+            populate(root, 4, 5);
+            LocalFileStorageImplementation storage = open(root, s -> {
+                s.setUsageAccountingEnabled(true);
+                s.setDeleteParallelism(parallelism);
+            });
+            try {
+                long size = storage.getCurrentStorage().getCurrentStorageSize();
+                long deleted = sizeOf(root.resolve("dir1"));
+                storage.delete("dir1");
+
+                assertFalse(Files.exists(root.resolve("dir1")), "parallelism " + parallelism);
+                assertEquals(size - deleted, storage.getCurrentStorage().getCurrentStorageSize(), "parallelism " + parallelism);
+            } finally {
+                storage.close();
+            }
+        }
+    }
+
+    // Podfolder bez DELETE privilegije: nista iz stabla se ne brise i zauzece ostaje isto
+    @Test
+    public void deniedSubfolderKeepsWholeTree() throws Exception {
+        for (int parallelism : PARALLELISM) {
+            Path root = directory.resolve("storage" + parallelism);
+            populate(root, 4, 5);
+            LocalFileStorageImplementation storage = open(root, s -> s.setDeleteParallelism(parallelism));
+            storage.addNewUser("bob", "pw", EnumSet.allOf(Privileges.class));
+            storage.setFolderPrivileges("bob", "dir1/sub1", EnumSet.of(Privileges.VIEW));
+            StorageSession session = storage.openSession("bob", "pw");
+            try {
+                long size = storage.getCurrentStorage().getCurrentStorageSize();
+                long files = countFiles(root.resolve("dir1"));
+                assertThrows(InsufficientPrivilegesException.class, () -> session.delete("dir1"), "parallelism " + parallelism);
+
+                assertEquals(files, countFiles(root.resolve("dir1")), "parallelism " + parallelism);
+                assertEquals(size, storage.getCurrentStorage().getCurrentStorageSize(), "parallelism " + parallelism);
+
+                // Folder bez zabranjenih podfoldera se i dalje brise
+                session.delete("dir2");
+                assertFalse(Files.exists(root.resolve("dir2")));
+            } finally {
+                session.close();
+                storage.close();
+            }
+        }
+    }
+
+    private static long countFiles(Path path) throws Exception {
+        try (Stream<Path> tree = Files.walk(path)) {
+            return tree.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static long sizeOf(Path path) throws Exception {
+        try (Stream<Path> tree = Files.walk(path)) {
+            return tree.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
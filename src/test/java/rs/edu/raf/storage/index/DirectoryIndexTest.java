@@ -0,0 +1,65 @@
+package rs.edu.raf.storage.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Operations;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// list() preko indeksa direktorijuma mora vratiti isto sto i obilazak diska, i posle izmena kroz skladiste
+public class DirectoryIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalFileStorageImplementation indexed;
+    private LocalFileStorageImplementation plain;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 6, 5);
+        plain = open(root);
+        indexed = open(root, storage -> storage.setDirectoryIndexEnabled(true));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        indexed.close();
+        plain.close();
+    }
+
+    @Test
+    public void listMatchesWalk() {
+        assertSameListing();
+    }
+
+    @Test
+    public void listMatchesWalkAfterChanges() throws Exception {
+        indexed.createFolder("dir1", "created");
+        indexed.createFile("dir1/created", "a.txt", "b.pdf");
+        indexed.put("dir2", writeFile(directory.resolve("source/put.pdf"), 100).toString());
+        indexed.move("dir1/created", "dir2/put.pdf", "dir3/sub0");
+        indexed.delete("dir4", "dir0/notes1.txt");
+
+        assertSameListing();
+    }
+
+    private void assertSameListing() {
+        for (String path : new String[]{"root", "dir1", "dir1/created", "dir2", "dir3/sub0"}) {
+            if (!root.resolve(path.equals("root") ? "" : path).toFile().exists())
+                continue;
+            assertEquals(sorted(plain.list(path, false)), sorted(indexed.list(path, false)), path);
+            assertEquals(sorted(plain.list(path, true)), sorted(indexed.list(path, true)), path);
+            assertEquals(sorted(plain.list(path, ".pdf", Operations.FILTER_EXTENSION, true)), sorted(indexed.list(path, ".pdf", Operations.FILTER_EXTENSION, true)), path);
+            assertEquals(plain.list(path, null, Operations.SORT_BY_NAME_ASC, true), indexed.list(path, null, Operations.SORT_BY_NAME_ASC, true), path);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package rs.edu.raf.storage.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Operations;
+import rs.edu.raf.storage.listing.FileEntry;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// FILTER_EXTENSION i getExtensionStats preko indeksa ekstenzija moraju odgovarati obilasku diska
+public class ExtensionIndexTest {
+
+    private static final String[] EXTENSIONS = {".pdf", ".gz", ".tar.gz", ".txt", "pdf", "-1.pdf", ".doc"};
+
+    @TempDir
+    Path directory;
+
+    private LocalFileStorageImplementation indexed;
+    private LocalFileStorageImplementation plain;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 6, 8);
+        plain = open(root);
+        indexed = open(root, storage -> storage.setExtensionIndexEnabled(true));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        indexed.close();
+        plain.close();
+    }
+
+    @Test
+    public void searchMatchesWalk() {
+        assertSameResults();
+    }
+
+    @Test
+    public void searchMatchesWalkAfterChanges() throws Exception {
+        indexed.createFolder("dir1", "archive");
+        indexed.createFile("dir1/archive", "a.pdf", "b.tar.gz", "c.txt");
+        indexed.put("dir2", writeFile(directory.resolve("source/put.pdf"), 300).toString());
+        indexed.move("dir1/archive", "dir2/put.pdf", "dir3/sub0");
+        indexed.delete("dir4", "dir0/notes1.txt");
+
+        assertSameResults();
+    }
+
+    @Test
+    public void statsMatchWalk() {
+        for (String path : new String[]{"root", "dir1", "dir2/sub2"}) {
+            for (boolean recursive : new boolean[]{true, false}) {
+                for (String extension : new String[]{".pdf", ".gz", ".tar.gz"}) {
+                    ExtensionStats stats = indexed.getExtensionStats(path, extension, recursive);
+                    List<FileEntry> files = plain.listEntries(path, extension, Operations.FILTER_EXTENSION, recursive);
+                    assertEquals(files.size(), stats.getCount(), path + " " + extension);
+                    assertEquals(files.stream().mapToLong(FileEntry::getSize).sum(), stats.getBytes(), path + " " + extension);
+                }
+                // Ekstenzija bez tacke vazi kao ista ekstenzija sa tackom
+                assertEquals(indexed.getExtensionStats(path, ".tar.gz", recursive).getCount(), indexed.getExtensionStats(path, "tar.gz", recursive).getCount(), path);
+            }
+        }
+    }
+
+    private void assertSameResults() {
+        for (String path : new String[]{"root", "dir1", "dir3"}) {
+            for (String extension : EXTENSIONS) {
+                assertEquals(sorted(plain.list(path, extension, Operations.FILTER_EXTENSION, true)), sorted(indexed.list(path, extension, Operations.FILTER_EXTENSION, true)), path + " " + extension);
+                assertEquals(sorted(plain.list(path, extension, Operations.FILTER_EXTENSION, false)), sorted(indexed.list(path, extension, Operations.FILTER_EXTENSION, false)), path + " " + extension);
+            }
+        }
+    }
+}
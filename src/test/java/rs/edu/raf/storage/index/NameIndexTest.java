@@ -0,0 +1,93 @@
+package rs.edu.raf.storage.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Operations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// FILTER_FILENAME preko trigram indeksa mora vratiti isto sto i obilazak diska
+public class NameIndexTest {
+
+    private static final String[] QUERIES = {"report", "q3", "-q1-", "data1", "tar.gz", "notes", "README", "xyz", "rt-q2-1"};
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalFileStorageImplementation indexed;
+    private LocalFileStorageImplementation plain;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 6, 8);
+        plain = open(root);
+        indexed = open(root, storage -> storage.setNameIndexEnabled(true));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (indexed != null)
+            indexed.close();
+        plain.close();
+    }
+
+    @Test
+    public void searchMatchesWalk() {
+        assertSameResults();
+    }
+
+    @Test
+    public void searchMatchesWalkAfterChanges() throws Exception {
+        indexed.createFolder("dir1", "reports");
+        indexed.createFile("dir1/reports", "report-q3-new.pdf", "summary.txt");
+        indexed.put("dir2", writeFile(directory.resolve("source/report-q3-put.pdf"), 10).toString());
+        indexed.move("dir1/reports", "dir2/report-q3-put.pdf", "dir3/sub0");
+        indexed.delete("dir4", "dir0/notes1.txt");
+
+        assertSameResults();
+    }
+
+    @Test
+    public void searchMatchesWalkAfterReopen() {
+        indexed.createFile("dir1", "report-q3-before-close.pdf");
+        indexed.close();
+        assertTrue(Files.exists(root.resolve(NameIndex.INDEX_FILE)));
+
+        indexed = open(root, storage -> storage.setNameIndexEnabled(true));
+        assertSameResults();
+    }
+
+    // Promene napravljene dok skladiste nije otvoreno (van biblioteke) ne smeju ostati nevidljive posle ponovnog otvaranja
+    @Test
+    public void searchMatchesWalkAfterOutsideChanges() throws Exception {
+        indexed.close();
+        writeFile(root.resolve("dir1/report-q3-outside.pdf"), 10);
+        writeFile(root.resolve("dir5/outside/notes-outside.txt"), 10);
+        Files.delete(root.resolve("dir0/notes1.txt"));
+        Files.move(root.resolve("dir2/sub2"), root.resolve("dir3/moved-report"));
+        deleteTree(root.resolve("dir4"));
+
+        indexed = open(root, storage -> storage.setNameIndexEnabled(true));
+        assertSameResults();
+        assertEquals(sorted(plain.list("root", "outside", Operations.FILTER_FILENAME, true)), sorted(indexed.list("root", "outside", Operations.FILTER_FILENAME, true)));
+    }
+
+    private void assertSameResults() {
+        for (String path : new String[]{"root", "dir1", "dir3"}) {
+            for (String query : QUERIES) {
+                assertEquals(sorted(plain.list(path, query, Operations.FILTER_FILENAME, true)), sorted(indexed.list(path, query, Operations.FILTER_FILENAME, true)), path + " " + query);
+                assertEquals(sorted(plain.list(path, query, Operations.FILTER_FILENAME, false)), sorted(indexed.list(path, query, Operations.FILTER_FILENAME, false)), path + " " + query);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package rs.edu.raf.storage.listing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.session.StorageSession;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// listStream i listPage moraju postovati VIEW privilegije po folderima isto kao list()
+public class FolderPrivilegeListingTest {
+
+    @TempDir
+    Path directory;
+
+    private LocalFileStorageImplementation storage;
+    private StorageSession session;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 4, 3);
+        storage = open(root);
+        storage.addNewUser("bob", "pw", EnumSet.allOf(Privileges.class));
+        storage.setFolderPrivileges("bob", "dir1/sub1", EnumSet.noneOf(Privileges.class));
+        storage.setFolderPrivileges("bob", "dir2", EnumSet.noneOf(Privileges.class));
+        storage.setFolderPrivileges("bob", "dir2/sub2", EnumSet.of(Privileges.VIEW));
+        session = storage.openSession("bob", "pw");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        session.close();
+        storage.close();
+    }
+
+    @Test
+    public void streamAndPagesMatchList() {
+        List<String> listed = sorted(session.list("root", true));
+        assertTrue(listed.stream().noneMatch(line -> line.contains("/dir1/sub1/")));
+        assertTrue(listed.stream().noneMatch(line -> line.contains("/dir2/notes")));
+        assertTrue(listed.stream().anyMatch(line -> line.contains("/dir2/sub2/")));
+
+        // Stream se otvara u sesiji, a cita se posle nje (bez vezanog korisnika)
+        Stream<String> stream = session.call(() -> storage.listStream("root", true));
+        try (stream) {
+            assertEquals(listed, sorted(stream.collect(Collectors.toList())));
+        }
+
+        List<String> pages = new ArrayList<>();
+        String token = null;
+        do {
+            ListingPage page = session.listPage("root", true, token, 4);
+            pages.addAll(page.getEntries());
+            token = page.getContinuationToken();
+        } while (token != null);
+        assertEquals(listed, sorted(pages));
+    }
+
+    // Promena privilegija dok sesija lista ne sme da pokvari prevodjenje privilegija (mapa se ne menja u mestu)
+    @Test
+    public void privilegeChangesDuringListing() throws Exception {
+        List<String> listed = sorted(session.list("dir1", true));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 500 && !done.get(); i++)
+                    storage.setFolderPrivileges("bob", "dir0/missing" + i, EnumSet.allOf(Privileges.class));
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                done.set(true);
+            }
+        });
+        writer.start();
+        try {
+            while (!done.get())
+                assertEquals(listed, sorted(session.list("dir1", true)));
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,124 @@
+package rs.edu.raf.storage.listing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Operations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Spojene strane listPage moraju dati isto sto i list(), i kada se stavka iz tokena obrise izmedju dva poziva
+public class ListPageTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalFileStorageImplementation storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 5, 4);
+        storage = open(root);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void pagesMatchList() {
+        for (boolean recursive : new boolean[]{true, false}) {
+            for (int pageSize : new int[]{1, 3, 7, 1000}) {
+                List<String> pages = readAllPages("root", recursive, pageSize);
+                assertEquals(pages.size(), new HashSet<>(pages).size());
+                assertEquals(sorted(storage.list("root", recursive)), sorted(pages), recursive + " " + pageSize);
+            }
+        }
+        assertEquals(sorted(storage.list("dir1", true)), sorted(readAllPages("dir1", true, 2)));
+    }
+
+    @Test
+    public void deletedTokenEntryDoesNotEndListing() throws Exception {
+        List<String> expected = new ArrayList<>();
+        String token = null;
+        do {
+            ListingPage page = storage.listPage("root", true, token, 5);
+            expected.addAll(page.getEntries());
+            token = page.getContinuationToken();
+            // Fajl iz tokena se brise pre sledeceg poziva
+            if (token != null && !Paths.get(token).getFileName().toString().startsWith("dir"))
+                Files.delete(root.resolve(token));
+        } while (token != null);
+
+        // Svaka stavka koja je ostala na disku mora se pojaviti na nekoj strani
+        for (String entry : storage.list("root", true))
+            assertTrue(expected.contains(entry), entry);
+    }
+
+    private List<String> readAllPages(String path, boolean recursive, int pageSize) {
+        List<String> entries = new ArrayList<>();
+        String token = null;
+        do {
+            ListingPage page = storage.listPage(path, recursive, token, pageSize);
+            assertTrue(page.getEntries().size() <= pageSize);
+            entries.addAll(page.getEntries());
+            token = page.getContinuationToken();
+        } while (token != null);
+        return entries;
+    }
+
+    // listStream ne ulazi u interne foldere i ne prekida se kada podfolder nestane tokom obilaska
+    @Test
+    public void listStreamSkipsInternalFoldersAndDeletedSubtrees() throws Exception {
+        writeFile(root.resolve(".trash/deleted/report-q0-0.pdf"), 10);
+        try (Stream<String> stream = storage.listStream("root", true)) {
+            List<String> listed = stream.collect(Collectors.toList());
+            assertEquals(sorted(storage.list("root", true)), sorted(listed));
+            assertTrue(listed.stream().noneMatch(line -> line.contains(".trash")));
+        }
+
+        // Sadrzaj korena je procitan pre prve stavke; posle nje se brisu folderi u koje obilazak jos nije usao
+        List<String> listed = new ArrayList<>();
+        try (Stream<String> stream = storage.listStream("root", true)) {
+            Iterator<String> lines = stream.iterator();
+            while (lines.hasNext()) {
+                listed.add(lines.next());
+                if (listed.size() == 1) {
+                    Path first = Paths.get(listed.get(0).split(" --- ")[1]);
+                    for (int i = 0; i < 5; i++) {
+                        if (!first.startsWith(root.resolve("dir" + i)))
+                            deleteTree(root.resolve("dir" + i));
+                    }
+                }
+            }
+        }
+        assertTrue(listed.stream().noneMatch(line -> line.contains(".trash")));
+    }
+
+    // Bez sortiranja listEntries sa limitom staje posle limit stavki i vraca pocetak cele liste, i uz paralelni obilazak
+    @Test
+    public void limitedListingIsPrefixOfFullListing() {
+        for (int parallelism : new int[]{1, 4}) {
+            storage.setListingParallelism(parallelism);
+            List<FileEntry> all = storage.listEntries("root", "report", Operations.FILTER_FILENAME, true);
+            for (int limit : new int[]{0, 1, 5, all.size(), all.size() + 10})
+                assertEquals(all.subList(0, Math.min(limit, all.size())), storage.listEntries("root", "report", Operations.FILTER_FILENAME, limit, true), parallelism + " " + limit);
+        }
+    }
+}
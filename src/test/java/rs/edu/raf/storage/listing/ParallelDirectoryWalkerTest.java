@@ -0,0 +1,108 @@
+package rs.edu.raf.storage.listing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.deletion.TrashReclaimer;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Paralelni obilazak mora vratiti isto (i istim redosledom) kao sekvencijalni, za svaki broj niti
+public class ParallelDirectoryWalkerTest {
+
+    private static final int[] PARALLELISM = {1, 2, 4, 8};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void walkMatchesSequentialWalk() throws Exception {
+        Path root = directory.resolve("tree");
+        populate(root, 12, 6);
+        List<File> expected = new ArrayList<>();
+        walk(root.toFile(), expected);
+
+        for (int parallelism : PARALLELISM) {
+            ParallelDirectoryWalker walker = new ParallelDirectoryWalker(parallelism);
+            try {
+                assertEquals(expected, walker.walk(root.toString()), "parallelism " + parallelism);
+            } finally {
+                walker.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void walkSkipsInternalFolders() throws Exception {
+        Path root = directory.resolve("storage");
+        populate(root, 4, 3);
+        Path trash = root.resolve(TrashReclaimer.TRASH_FOLDER);
+        writeFile(trash.resolve("deleted/report-q0-0.pdf"), 10);
+        ParallelDirectoryWalker walker = new ParallelDirectoryWalker(4);
+        try {
+            assertTrue(walker.walk(root.toString(), trash.toString()).stream().noneMatch(file -> file.toPath().startsWith(trash)));
+        } finally {
+            walker.shutdown();
+        }
+
+        LocalFileStorageImplementation plain = open(root);
+        try {
+            for (int parallelism : PARALLELISM) {
+                LocalFileStorageImplementation parallel = open(root, storage -> storage.setListingParallelism(parallelism));
+                try {
+                    Collection<String> listing = parallel.list("root", true);
+                    assertEquals(sorted(plain.list("root", true)), sorted(listing), "parallelism " + parallelism);
+                    assertTrue(listing.stream().noneMatch(line -> line.contains(TrashReclaimer.TRASH_FOLDER)));
+                } finally {
+                    parallel.close();
+                }
+            }
+        } finally {
+            plain.close();
+        }
+    }
+
+    // Merenje: gradle test -Dbenchmark=true (vremena zavise od diska i broja jezgara, pa se samo ispisuju)
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmark() throws Exception {
+        Path root = directory.resolve("benchmark");
+        populate(root, 400, 25);
+        LocalFileStorageImplementation storage = open(root);
+        try {
+            for (int parallelism : PARALLELISM) {
+                storage.setListingParallelism(parallelism);
+                int entries = storage.list("root", true).size();
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < 5; round++) {
+                    long start = System.nanoTime();
+                    storage.list("root", true);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.println("parallelism " + parallelism + ": " + entries + " stavki, " + best / 1_000_000 + " ms");
+            }
+        } finally {
+            storage.close();
+        }
+    }
+
+    private static void walk(File directory, List<File> result) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            result.add(file);
+            if (file.isDirectory())
+                walk(file, result);
+        }
+    }
+}
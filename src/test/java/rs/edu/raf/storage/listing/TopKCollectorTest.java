@@ -0,0 +1,41 @@
+package rs.edu.raf.storage.listing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Prvih limit stavki iz heap-a mora biti isto sto i pocetak stabilno sortirane cele liste
+public class TopKCollectorTest {
+
+    private static final Comparator<FileEntry> BY_SIZE = Comparator.comparingLong(FileEntry::getSize);
+
+    @Test
+    public void keepsFirstEntriesOfStableSort() {
+        List<FileEntry> entries = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++)
+            entries.add(new FileEntry("f" + i, "/s/f" + i, "f" + i, random.nextInt(50), 0, false));
+        List<FileEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(BY_SIZE);
+
+        for (int limit : new int[]{0, 1, 10, 499, 500, 5000}) {
+            TopKCollector collector = new TopKCollector(BY_SIZE, limit);
+            entries.forEach(collector);
+            assertEquals(sorted.subList(0, Math.min(limit, sorted.size())), collector.toSortedList(), "limit " + limit);
+        }
+    }
+
+    @Test
+    public void hugeLimitDoesNotPreallocate() {
+        TopKCollector collector = new TopKCollector(BY_SIZE, Integer.MAX_VALUE);
+        collector.accept(new FileEntry("a", "/s/a", "a", 2, 0, false));
+        collector.accept(new FileEntry("b", "/s/b", "b", 1, 0, false));
+        assertEquals(2, collector.toSortedList().size());
+        assertEquals("b", collector.toSortedList().get(0).getName());
+    }
+}
@@ -0,0 +1,100 @@
+package rs.edu.raf.storage.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.StorageModel;
+import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.user_management.User;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Stanje posle pada programa (config.json + ponovljeni zurnal) mora biti isto kao stanje pre pada
+public class OperationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void replayRestoresStateAfterCrash() throws Exception {
+        Path root = directory.resolve("storage");
+        LocalFileStorageImplementation crashed = open(root, storage -> storage.setJournalEnabled(true));
+        crashed.limitStorageSize(1_000_000);
+        crashed.restrictExtension(".exe");
+        crashed.addNewUser("ana", "pw", Set.of(Privileges.VIEW, Privileges.CREATE));
+        crashed.setFolderPrivileges("ana", "Download", Set.of(Privileges.VIEW));
+        crashed.limitNumberOfFiles(5, "Download");
+        crashed.put("Download", writeFile(directory.resolve("source/a.txt"), 1234).toString());
+        StorageModel expected = crashed.getCurrentStorage();
+
+        // Snapshot jos nema promene - postoje samo u zurnalu
+        assertTrue(OperationJournal.exists(root.toString()));
+        StorageModel snapshot = new ObjectMapper().readValue(root.resolve("config.json").toFile(), StorageModel.class);
+        assertFalse(snapshot.getUnsupportedExtensions().contains(".exe"));
+
+        // Skladiste se ne zatvara (pad), pa se otvara ponovo
+        LocalFileStorageImplementation reopened = open(root, storage -> storage.setJournalEnabled(true));
+        assertSameState(expected, reopened.getCurrentStorage());
+        reopened.close();
+
+        // Zapisi se ne ponavljaju dvaput
+        LocalFileStorageImplementation again = open(root);
+        assertSameState(expected, again.getCurrentStorage());
+        assertEquals(1, Collections.frequency(again.getCurrentStorage().getUnsupportedExtensions(), ".exe"));
+        again.close();
+        crashed.close();
+    }
+
+    @Test
+    public void replaySkipsIncompleteLastRecord() throws Exception {
+        Path root = directory.resolve("storage");
+        LocalFileStorageImplementation crashed = open(root, storage -> storage.setJournalEnabled(true));
+        crashed.restrictExtension(".exe");
+        Files.writeString(root.resolve(OperationJournal.JOURNAL_FILE), "{\"type\":\"RESTRICTED_EXT", java.nio.file.StandardOpenOption.APPEND);
+
+        LocalFileStorageImplementation reopened = open(root);
+        assertEquals(Collections.singletonList(".exe"), reopened.getCurrentStorage().getUnsupportedExtensions());
+        reopened.close();
+        crashed.close();
+    }
+
+    @Test
+    public void failedSnapshotKeepsJournal() throws Exception {
+        Path root = directory.resolve("storage");
+        LocalFileStorageImplementation crashed = open(root, storage -> storage.setJournalEnabled(true));
+        crashed.restrictExtension(".exe");
+
+        // Privremeni fajl ne moze da se napravi, pa upis config.json ne uspeva
+        Path blocked = Files.createDirectories(root.resolve("config.json.tmp/blocked"));
+        crashed.getCurrentStorage().compactJournal();
+        assertTrue(OperationJournal.exists(root.toString()));
+        Files.delete(blocked);
+        Files.delete(blocked.getParent());
+
+        LocalFileStorageImplementation reopened = open(root);
+        assertEquals(Collections.singletonList(".exe"), reopened.getCurrentStorage().getUnsupportedExtensions());
+        reopened.close();
+        crashed.close();
+    }
+
+    private static void assertSameState(StorageModel expected, StorageModel actual) {
+        assertEquals(expected.getStorageSizeLimit(), actual.getStorageSizeLimit());
+        assertEquals(expected.isStorageSizeLimitSet(), actual.isStorageSizeLimitSet());
+        assertEquals(expected.getCurrentStorageSize(), actual.getCurrentStorageSize());
+        assertEquals(expected.getUnsupportedExtensions(), actual.getUnsupportedExtensions());
+        assertEquals(expected.getMaxNumberOfFilesInDirectory(), actual.getMaxNumberOfFilesInDirectory());
+        assertEquals(expected.getUserList().size(), actual.getUserList().size());
+        for (User user : expected.getUserList()) {
+            User restored = actual.getUserList().stream().filter(u -> u.getUsername().equals(user.getUsername())).findFirst().orElseThrow();
+            assertEquals(user.getPrivileges(), restored.getPrivileges());
+            assertEquals(user.getFolderPrivileges(), restored.getFolderPrivileges());
+        }
+    }
+}
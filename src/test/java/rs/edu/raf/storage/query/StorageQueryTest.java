@@ -0,0 +1,146 @@
+package rs.edu.raf.storage.query;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.enums.Privileges;
+import rs.edu.raf.storage.listing.FileEntry;
+import rs.edu.raf.storage.session.StorageSession;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// query() preko indeksa imena i ekstenzija (queryIndexes) mora vratiti iste stavke kao obilazak foldera (queryDirectory):
+// za offset/limit, maxDepth, iskljucene foldere i VIEW privilegije po folderima
+public class StorageQueryTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 6, 4);
+        writeFile(root.resolve("dir0/sub0/deep/report-q1-9.pdf"), 40);
+        writeFile(root.resolve("dir4/sub1/deep/deeper/report-q2-8.pdf"), 50);
+
+        LocalFileStorageImplementation storage = open(root);
+        storage.addNewUser("bob", "pw", EnumSet.allOf(Privileges.class));
+        storage.setFolderPrivileges("bob", "dir1/sub1", EnumSet.noneOf(Privileges.class));
+        storage.setFolderPrivileges("bob", "dir2", EnumSet.noneOf(Privileges.class));
+        storage.setFolderPrivileges("bob", "dir2/sub2", EnumSet.of(Privileges.VIEW));
+        storage.close();
+    }
+
+    @Test
+    public void offsetAndLimit() throws Exception {
+        assertSameResults(() -> List.of(
+                new StorageQuery("root").extension(".pdf").sortBy(StorageQuery.SortKey.PATH, false).offset(3).limit(5),
+                new StorageQuery("root").type(StorageQuery.EntryType.FILE).nameContains("report").sortBy(StorageQuery.SortKey.SIZE, true).offset(2).limit(4),
+                new StorageQuery("root").extension(".pdf").nameContains("-q1").sortBy(StorageQuery.SortKey.NAME, false).limit(3),
+                new StorageQuery("dir0").extension(".txt").sortBy(StorageQuery.SortKey.PATH, true).offset(1).limit(100),
+                new StorageQuery("root").extension(".pdf").sortBy(StorageQuery.SortKey.PATH, false).offset(1000)));
+    }
+
+    @Test
+    public void maxDepthAndExcludedFolders() throws Exception {
+        assertSameResults(() -> List.of(
+                new StorageQuery("root").extension(".pdf").maxDepth(3).sortBy(StorageQuery.SortKey.PATH, false),
+                new StorageQuery("root").extension(".txt").maxDepth(1).sortBy(StorageQuery.SortKey.PATH, false),
+                new StorageQuery("dir0").extension(".pdf").maxDepth(2).sortBy(StorageQuery.SortKey.PATH, false),
+                new StorageQuery("root").extension(".pdf").recursive(false).sortBy(StorageQuery.SortKey.PATH, false),
+                new StorageQuery("root").extension(".pdf").excludeFolders("sub1").sortBy(StorageQuery.SortKey.PATH, false),
+                new StorageQuery("root").type(StorageQuery.EntryType.FILE).nameContains("report").excludeFolders("deep*").excludeFolders("dir3")
+                        .sortBy(StorageQuery.SortKey.PATH, false).offset(2).limit(10)));
+    }
+
+    // Isti upiti kao korisnik bez VIEW privilegije za dir1/sub1 i dir2 (osim dir2/sub2)
+    @Test
+    public void folderViewPrivileges() throws Exception {
+        for (boolean indexed : new boolean[]{false, true}) {
+            LocalFileStorageImplementation storage = openIndexed(indexed);
+            StorageSession session = storage.openSession("bob", "pw");
+            try {
+                List<String> pdfs = session.call(() -> paths(storage.query(new StorageQuery("root").extension(".pdf").sortBy(StorageQuery.SortKey.PATH, false))));
+                assertTrue(pdfs.stream().noneMatch(path -> path.startsWith("dir1/sub1/")), "indexed " + indexed);
+                assertTrue(pdfs.stream().anyMatch(path -> path.startsWith("dir2/sub2/")), "indexed " + indexed);
+                List<String> notes = session.call(() -> paths(storage.query(new StorageQuery("root").extension(".txt"))));
+                assertTrue(notes.stream().noneMatch(path -> path.startsWith("dir2/")), "indexed " + indexed);
+            } finally {
+                session.close();
+                storage.close();
+            }
+        }
+
+        assertSameResults(() -> List.of(
+                new StorageQuery("root").extension(".pdf").sortBy(StorageQuery.SortKey.PATH, false),
+                new StorageQuery("root").extension(".txt").sortBy(StorageQuery.SortKey.NAME, true).offset(1).limit(6),
+                new StorageQuery("dir2/sub2").type(StorageQuery.EntryType.FILE).nameContains("report").maxDepth(2).sortBy(StorageQuery.SortKey.PATH, false)), "bob");
+    }
+
+    // Bez sortiranja redosled zavisi od nacina izvrsavanja, pa se porede skupovi stavki
+    @Test
+    public void unsortedQueriesReturnSameEntries() throws Exception {
+        List<StorageQuery> queries = List.of(
+                new StorageQuery("root").extension(".pdf"),
+                new StorageQuery("root").type(StorageQuery.EntryType.FILE).nameContains("report").maxDepth(3),
+                new StorageQuery("root").extension(".txt").excludeFolders("dir1"));
+        List<List<String>> walked = run(false, () -> queries, null);
+        List<List<String>> indexed = run(true, () -> queries, null);
+        for (int i = 0; i < queries.size(); i++)
+            assertEquals(sorted(walked.get(i)), sorted(indexed.get(i)), "query " + i);
+    }
+
+    private void assertSameResults(Supplier<List<StorageQuery>> queries) throws Exception {
+        assertSameResults(queries, null);
+    }
+
+    private void assertSameResults(Supplier<List<StorageQuery>> queries, String username) throws Exception {
+        List<List<String>> walked = run(false, queries, username);
+        List<List<String>> indexed = run(true, queries, username);
+        for (int i = 0; i < walked.size(); i++)
+            assertEquals(walked.get(i), indexed.get(i), "query " + i);
+        assertTrue(walked.stream().anyMatch(result -> !result.isEmpty()));
+    }
+
+    private List<List<String>> run(boolean indexed, Supplier<List<StorageQuery>> queries, String username) throws Exception {
+        LocalFileStorageImplementation storage = openIndexed(indexed);
+        StorageSession session = username == null ? null : storage.openSession(username, "pw");
+        try {
+            List<List<String>> results = new ArrayList<>();
+            for (StorageQuery query : queries.get()) {
+                Supplier<List<String>> run = () -> paths(storage.query(query));
+                results.add(session == null ? run.get() : session.call(run));
+            }
+            return results;
+        } finally {
+            if (session != null)
+                session.close();
+            storage.close();
+        }
+    }
+
+    private LocalFileStorageImplementation openIndexed(boolean indexed) {
+        LocalFileStorageImplementation storage = open(root, s -> {
+            s.setNameIndexEnabled(indexed);
+            s.setExtensionIndexEnabled(indexed);
+        });
+        assertEquals(indexed, storage.getCurrentStorage().getNameIndex() != null);
+        assertEquals(indexed, storage.getCurrentStorage().getExtensionIndex() != null);
+        return storage;
+    }
+
+    private static List<String> paths(List<FileEntry> entries) {
+        return entries.stream().map(FileEntry::getRelativePath).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,113 @@
+package rs.edu.raf.storage.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Sesije dele pool-ove niti sa implementacijom koja ih je otvorila
+public class StorageSessionTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalFileStorageImplementation storage;
+    private final List<StorageSession> sessions = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 4, 3);
+        storage = open(root);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sessions.forEach(StorageSession::close);
+        storage.close();
+    }
+
+    @Test
+    public void sessionsSharePutPool() throws Exception {
+        int parallelism = storage.getPutParallelism();
+        for (int i = 0; i < 5; i++) {
+            StorageSession session = storage.openSession(USER, PASSWORD);
+            sessions.add(session);
+            String[] sources = new String[parallelism];
+            for (int j = 0; j < sources.length; j++)
+                sources[j] = writeFile(directory.resolve("source" + i + "/f" + j + ".txt"), 100).toString();
+            session.putParallel("dir0", sources);
+        }
+
+        long putThreads = Thread.getAllStackTraces().keySet().stream().filter(thread -> thread.getName().equals("storage-put")).count();
+        assertTrue(putThreads <= parallelism, putThreads + " niti");
+    }
+
+    @Test
+    public void sessionUsesWalkerSetAfterOpening() throws Exception {
+        StorageSession session = storage.openSession(USER, PASSWORD);
+        sessions.add(session);
+        storage.setListingParallelism(4);
+        List<String> listing = sorted(session.list("root", true));
+        storage.setListingParallelism(2);
+
+        assertEquals(listing, sorted(session.list("root", true)));
+        assertEquals(2, session.getStorage().getListingParallelism());
+        assertEquals(sorted(storage.list("root", true)), listing);
+    }
+
+    // Promena broja niti ne sme da prekine put i brisanje koji su u toku u drugim sesijama
+    @Test
+    public void changingParallelismKeepsRunningOperations() throws Exception {
+        StorageSession putSession = storage.openSession(USER, PASSWORD);
+        StorageSession deleteSession = storage.openSession(USER, PASSWORD);
+        sessions.add(putSession);
+        sessions.add(deleteSession);
+        String[] sources = new String[20];
+        for (int j = 0; j < sources.length; j++)
+            sources[j] = writeFile(directory.resolve("source/f" + j + ".txt"), 1000).toString();
+        for (int i = 0; i < 20; i++)
+            populate(root.resolve("tree" + i), 3, 3);
+
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread put = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i++)
+                    putSession.putParallel("dir0", sources);
+            } catch (Throwable t) {
+                failures.add(t);
+            }
+        });
+        Thread delete = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i++)
+                    deleteSession.delete("tree" + i);
+            } catch (Throwable t) {
+                failures.add(t);
+            }
+        });
+        put.start();
+        delete.start();
+        for (int i = 0; put.isAlive() || delete.isAlive(); i++) {
+            storage.setPutParallelism(1 + i % 3);
+            storage.setDeleteParallelism(1 + i % 3);
+            storage.setListingParallelism(1 + i % 3);
+        }
+        put.join();
+        delete.join();
+
+        assertEquals(List.of(), failures);
+        for (int i = 0; i < 20; i++)
+            assertFalse(root.resolve("tree" + i).toFile().exists(), "tree" + i);
+    }
+}
@@ -0,0 +1,64 @@
+package rs.edu.raf.storage.transfer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Prenos svakim nacinom daje isti sadrzaj, a postojeci cilj ostaje netaknut ako prenos ne uspe
+public class FileIngesterTest {
+
+    @TempDir
+    Path directory;
+
+    private Path source;
+    private Path target;
+    private Path staging;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        source = Files.write(directory.resolve("source.bin"), "new content".getBytes());
+        target = Files.write(directory.resolve("target.bin"), "old".getBytes());
+        staging = Files.createDirectories(directory.resolve("staging"));
+    }
+
+    @Test
+    public void everyModeReplacesTarget() throws Exception {
+        for (IngestMode mode : IngestMode.values()) {
+            Files.write(target, "old".getBytes());
+            assertEquals(target, FileIngester.ingest(source, target, staging, mode));
+            assertArrayEquals("new content".getBytes(), Files.readAllBytes(target), mode.name());
+            assertArrayEquals("new content".getBytes(), Files.readAllBytes(source), mode.name());
+            assertStagingEmpty();
+        }
+    }
+
+    @Test
+    public void hardLinkToSameFileLeavesNoTemp() throws Exception {
+        FileIngester.ingest(source, target, staging, IngestMode.HARD_LINK);
+        FileIngester.ingest(source, target, staging, IngestMode.HARD_LINK);
+        assertArrayEquals("new content".getBytes(), Files.readAllBytes(target));
+        assertStagingEmpty();
+    }
+
+    @Test
+    public void failedIngestKeepsTarget() throws Exception {
+        for (IngestMode mode : IngestMode.values()) {
+            assertThrows(NoSuchFileException.class, () -> FileIngester.ingest(directory.resolve("missing.bin"), target, staging, mode));
+            assertArrayEquals("old".getBytes(), Files.readAllBytes(target), mode.name());
+            assertStagingEmpty();
+        }
+    }
+
+    private void assertStagingEmpty() throws Exception {
+        try (Stream<Path> entries = Files.list(staging)) {
+            assertEquals(0, entries.count());
+        }
+    }
+}
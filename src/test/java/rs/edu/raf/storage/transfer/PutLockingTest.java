@@ -0,0 +1,90 @@
+package rs.edu.raf.storage.transfer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.*;
+
+// Dok put kopira sadrzaj, ostale operacije u istom folderu ne cekaju (folder se zakljucava samo za zamenu fajla)
+@EnabledOnOs(OS.LINUX)
+public class PutLockingTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private Path fifo;
+    private LocalFileStorageImplementation storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root = directory.resolve("storage");
+        populate(root, 2, 2);
+        storage = open(root);
+        // Citanje iz imenovanog pipe-a blokira dok test ne upise sadrzaj, pa put ostaje u kopiranju
+        fifo = Files.createDirectories(directory.resolve("source")).resolve("slow.txt");
+        assertEquals(0, new ProcessBuilder("mkfifo", fifo.toString()).start().waitFor());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void putDoesNotLockFolderWhileCopying() throws Exception {
+        assertFolderUsableDuringCopy(storage -> storage.put("dir0", fifo.toString()));
+    }
+
+    @Test
+    public void putParallelDoesNotLockFolderWhileCopying() throws Exception {
+        assertFolderUsableDuringCopy(storage -> assertTrue(storage.putParallel("dir0", fifo.toString()).get(0).isSuccessful()));
+    }
+
+    @Test
+    public void deduplicatedPutDoesNotLockFolderWhileCopying() throws Exception {
+        storage.close();
+        storage = open(root, s -> s.setDeduplicationEnabled(true));
+        assertFolderUsableDuringCopy(storage -> storage.put("dir0", fifo.toString()));
+    }
+
+    private void assertFolderUsableDuringCopy(Consumer<LocalFileStorageImplementation> put) throws Exception {
+        CompletableFuture<Void> copying = CompletableFuture.runAsync(() -> put.accept(storage));
+        try {
+            awaitCopying();
+            Path other = writeFile(directory.resolve("source/other.txt"), 100);
+            CompletableFuture.runAsync(() -> storage.put("dir0", other.toString())).get(10, TimeUnit.SECONDS);
+            assertTrue(Files.exists(root.resolve("dir0/other.txt")));
+            assertFalse(copying.isDone());
+        } finally {
+            try (OutputStream out = Files.newOutputStream(fifo)) {
+                out.write("slow content".getBytes());
+            }
+        }
+        copying.get(10, TimeUnit.SECONDS);
+        assertEquals("slow content", Files.readString(root.resolve("dir0/slow.txt")));
+    }
+
+    // Ceka da neka nit stigne do kopiranja sadrzaja (blokirana na citanju pipe-a)
+    private static void awaitCopying() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (Thread.getAllStackTraces().values().stream().flatMap(Arrays::stream).noneMatch(frame -> frame.getMethodName().equals("stage"))) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package rs.edu.raf.storage.transfer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.edu.raf.storage.LocalFileStorageImplementation;
+import rs.edu.raf.storage.exceptions.FileLimitExceededException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rs.edu.raf.storage.StorageTestSupport.open;
+
+// Put iz kanala: privremeni fajl se ne vidi u listanju dok traje upis, a imena nalik privremenim fajlovima se racunaju u ogranicenje
+public class StreamPutTest {
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private LocalFileStorageImplementation storage;
+
+    @BeforeEach
+    public void setUp() {
+        root = directory.resolve("storage");
+        storage = open(root);
+        storage.createFolder("", "in");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void tempFileIsNotListedDuringWrite() throws Exception {
+        List<Collection<String>> listings = new ArrayList<>();
+        // Listanje se radi usred upisa, posle prvog procitanog dela
+        InputStream source = new ByteArrayInputStream(new byte[3 << 20]) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (pos > 0 && listings.isEmpty())
+                    listings.add(storage.list("in", false));
+                return super.read(b, off, len);
+            }
+        };
+        storage.put("in", "big.bin", source);
+
+        assertEquals(1, listings.size());
+        assertTrue(listings.get(0).isEmpty(), listings.get(0).toString());
+        assertEquals(1, storage.list("in", false).size());
+        assertEquals(3 << 20, Files.size(root.resolve("in/big.bin")));
+    }
+
+    @Test
+    public void partNamesCountTowardsFileLimit() {
+        storage.limitNumberOfFiles(2, "in");
+        storage.createFile("in", ".a.part", ".b.part");
+        // Broj stavki se posle ponovnog otvaranja cita sa diska
+        storage.close();
+        storage = open(root);
+        assertThrows(FileLimitExceededException.class, () -> storage.createFile("in", "c.txt"));
+        assertThrows(FileLimitExceededException.class, () -> storage.put("in", "d.txt", new ByteArrayInputStream(new byte[1])));
+    }
+}